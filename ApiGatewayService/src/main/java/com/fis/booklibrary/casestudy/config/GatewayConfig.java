@@ -1,9 +1,13 @@
 package com.fis.booklibrary.casestudy.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.gateway.route.RouteLocator;
 import org.springframework.cloud.gateway.route.builder.RouteLocatorBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+
+import com.fis.booklibrary.casestudy.filter.SingleFlightGatewayFilterFactory;
 
 /**
  * Spring Cloud Gateway configuration replacing deprecated Zuul proxy
@@ -11,9 +15,23 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class GatewayConfig {
 
+	@Value("${booklibrary.gateway.single-flight.max-body-bytes:262144}")
+	private int singleFlightMaxBodyBytes;
+
 	@Bean
-	public RouteLocator customRouteLocator(RouteLocatorBuilder builder) {
+	public RouteLocator customRouteLocator(RouteLocatorBuilder builder, SingleFlightGatewayFilterFactory singleFlight) {
 		return builder.routes()
+				// Single book reads, concurrent identical requests share one upstream call
+				.route("book-service-reads", r -> r
+						.order(-1)
+						.path("/book-service/books/{bookId}")
+						.and().method(HttpMethod.GET)
+						.filters(f -> f.stripPrefix(1)
+								.addRequestHeader("X-Gateway-Route", "book-service")
+								.filter(singleFlight.apply(new SingleFlightGatewayFilterFactory.Config()
+										.setMaxBodyBytes(singleFlightMaxBodyBytes))))
+						.uri("lb://book-service"))
+				
 				// Route for BookService
 				.route("book-service", r -> r
 						.path("/book-service/**")
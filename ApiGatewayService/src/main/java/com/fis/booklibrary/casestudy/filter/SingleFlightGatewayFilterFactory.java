@@ -0,0 +1,263 @@
+package com.fis.booklibrary.casestudy.filter;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Single-flight filter: concurrent identical requests share one upstream call.
+ * The first request of a key (the leader) is routed as usual and its response
+ * is buffered while it is written. Requests with the same key arriving before
+ * it completes (followers) are not forwarded, they get a copy of the leader's
+ * status, headers and body. Only successful and 404 responses are shared,
+ * without Set-Cookie and hop-by-hop headers. A leader that fails, is
+ * cancelled, answers with another status or with a body over the size limit
+ * releases its followers to call upstream themselves.
+ *
+ * The key is route, method, path, query and the configured request headers,
+ * so clients negotiating another encoding, identity or session never share a response.
+ * Only meant for idempotent reads of bounded size, not for streams.
+ *
+ * Apply per route in GatewayConfig, or as SingleFlight in route properties.
+ * Publishes gateway.single.flight.requests by route and role (leader,
+ * follower, bypassed) and gateway.single.flight.collapse.ratio by route.
+ */
+@Component
+public class SingleFlightGatewayFilterFactory extends AbstractGatewayFilterFactory<SingleFlightGatewayFilterFactory.Config> {
+
+	// Belong to the leader's connection or client, never copied to followers
+	private static final Set<String> UNSHARED_HEADERS = Set.of("set-cookie", "connection", "keep-alive",
+			"proxy-authenticate", "proxy-authorization", "te", "trailer", "transfer-encoding", "upgrade");
+
+	private final Map<String, Flight> inFlight = new ConcurrentHashMap<>();
+	private final Map<String, RouteMetrics> metrics = new ConcurrentHashMap<>();
+	private final MeterRegistry meterRegistry;
+
+	public SingleFlightGatewayFilterFactory(MeterRegistry meterRegistry) {
+		super(Config.class);
+		this.meterRegistry = meterRegistry;
+	}
+
+	@Override
+	public GatewayFilter apply(Config config) {
+		return (exchange, chain) -> {
+			ServerHttpRequest request = exchange.getRequest();
+			Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+			RouteMetrics routeMetrics = metrics(route == null ? "unknown" : route.getId());
+			if (!config.getMethods().contains(request.getMethod())) {
+				routeMetrics.bypassed.increment();
+				return chain.filter(exchange);
+			}
+
+			String key = key(route, request, config);
+			Flight flight = new Flight();
+			Flight leader = inFlight.putIfAbsent(key, flight);
+			if (leader != null) {
+				routeMetrics.follower();
+				return leader.response.asMono()
+						.map(Optional::of)
+						.defaultIfEmpty(Optional.empty())
+						// Without a shareable response from the leader go upstream alone
+						.flatMap(shared -> shared.isPresent() ? write(exchange.getResponse(), shared.get()) : chain.filter(exchange));
+			}
+
+			routeMetrics.leader();
+			ServerHttpResponse recording = new RecordingResponse(exchange.getResponse(), flight, config.getMaxBodyBytes());
+			Runnable release = () -> {
+				inFlight.remove(key, flight);
+				flight.response.tryEmitEmpty();
+			};
+			return chain.filter(exchange.mutate().response(recording).build())
+					.doOnTerminate(release)
+					.doOnCancel(release);
+		};
+	}
+
+	private String key(Route route, ServerHttpRequest request, Config config) {
+		StringBuilder key = new StringBuilder();
+		key.append(route == null ? "" : route.getId()).append(' ')
+				.append(request.getMethod().name()).append(' ')
+				.append(request.getURI().getRawPath());
+		if (request.getURI().getRawQuery() != null) {
+			key.append('?').append(request.getURI().getRawQuery());
+		}
+		for (String header : config.getKeyHeaders()) {
+			key.append('\n').append(header).append(':').append(request.getHeaders().getOrEmpty(header));
+		}
+		return key.toString();
+	}
+
+	private Mono<Void> write(ServerHttpResponse response, SharedResponse shared) {
+		response.setStatusCode(shared.status);
+		response.getHeaders().putAll(shared.headers);
+		return response.writeWith(Mono.fromSupplier(() -> response.bufferFactory().wrap(shared.body)));
+	}
+
+	private RouteMetrics metrics(String routeId) {
+		return metrics.computeIfAbsent(routeId, id -> new RouteMetrics(meterRegistry, id));
+	}
+
+	public static class Config {
+
+		private List<HttpMethod> methods = List.of(HttpMethod.GET, HttpMethod.HEAD);
+		private List<String> keyHeaders = List.of(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING, HttpHeaders.AUTHORIZATION,
+				HttpHeaders.COOKIE);
+		private int maxBodyBytes = 256 * 1024;
+
+		public List<HttpMethod> getMethods() {
+			return methods;
+		}
+
+		public Config setMethods(List<HttpMethod> methods) {
+			this.methods = methods;
+			return this;
+		}
+
+		public List<String> getKeyHeaders() {
+			return keyHeaders;
+		}
+
+		public Config setKeyHeaders(List<String> keyHeaders) {
+			this.keyHeaders = keyHeaders;
+			return this;
+		}
+
+		public int getMaxBodyBytes() {
+			return maxBodyBytes;
+		}
+
+		public Config setMaxBodyBytes(int maxBodyBytes) {
+			this.maxBodyBytes = maxBodyBytes;
+			return this;
+		}
+	}
+
+	private static class Flight {
+		private final Sinks.One<SharedResponse> response = Sinks.one();
+	}
+
+	private record SharedResponse(HttpStatusCode status, HttpHeaders headers, byte[] body) {
+	}
+
+	/**
+	 * Passes the leader's response through while keeping a copy for the followers
+	 */
+	private static class RecordingResponse extends ServerHttpResponseDecorator {
+
+		private final Flight flight;
+		private final int maxBodyBytes;
+		private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+		RecordingResponse(ServerHttpResponse delegate, Flight flight, int maxBodyBytes) {
+			super(delegate);
+			this.flight = flight;
+			this.maxBodyBytes = maxBodyBytes;
+		}
+
+		@Override
+		public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+			Flux<? extends DataBuffer> recorded = Flux.from(body)
+					.doOnNext(this::record)
+					.doOnComplete(this::share);
+			return getDelegate().writeWith(recorded);
+		}
+
+		private void record(DataBuffer buffer) {
+			if (copy == null) {
+				return;
+			}
+			if (copy.size() + buffer.readableByteCount() > maxBodyBytes) {
+				// Too large to hold on to, followers call upstream themselves
+				copy = null;
+				return;
+			}
+			try (DataBuffer.ByteBufferIterator readable = buffer.readableByteBuffers()) {
+				while (readable.hasNext()) {
+					ByteBuffer chunk = readable.next();
+					byte[] bytes = new byte[chunk.remaining()];
+					chunk.get(bytes);
+					copy.writeBytes(bytes);
+				}
+			}
+		}
+
+		private void share() {
+			HttpStatusCode status = getDelegate().getStatusCode();
+			// Errors and throttling are the leader's own, followers try upstream themselves
+			if (copy != null && status != null && (status.is2xxSuccessful() || status.value() == 404)) {
+				HttpHeaders leaderHeaders = getDelegate().getHeaders();
+				List<String> connectionHeaders = leaderHeaders.getConnection();
+				HttpHeaders headers = new HttpHeaders();
+				leaderHeaders.forEach((name, values) -> {
+					if (!UNSHARED_HEADERS.contains(name.toLowerCase(Locale.ROOT))
+							&& connectionHeaders.stream().noneMatch(name::equalsIgnoreCase)) {
+						headers.put(name, values);
+					}
+				});
+				flight.response.tryEmitValue(new SharedResponse(status, headers, copy.toByteArray()));
+			}
+		}
+	}
+
+	private static class RouteMetrics {
+
+		private final Counter leaders;
+		private final Counter followers;
+		private final Counter bypassed;
+		private final LongAdder leaderCount = new LongAdder();
+		private final LongAdder followerCount = new LongAdder();
+
+		RouteMetrics(MeterRegistry registry, String routeId) {
+			leaders = registry.counter("gateway.single.flight.requests", "route", routeId, "role", "leader");
+			followers = registry.counter("gateway.single.flight.requests", "route", routeId, "role", "follower");
+			bypassed = registry.counter("gateway.single.flight.requests", "route", routeId, "role", "bypassed");
+			Gauge.builder("gateway.single.flight.collapse.ratio", this, RouteMetrics::collapseRatio)
+					.description("Share of requests answered from another request's upstream call")
+					.tag("route", routeId)
+					.register(registry);
+		}
+
+		void leader() {
+			leaders.increment();
+			leaderCount.increment();
+		}
+
+		void follower() {
+			followers.increment();
+			followerCount.increment();
+		}
+
+		double collapseRatio() {
+			long total = leaderCount.sum() + followerCount.sum();
+			return total == 0 ? 0 : (double) followerCount.sum() / total;
+		}
+	}
+}
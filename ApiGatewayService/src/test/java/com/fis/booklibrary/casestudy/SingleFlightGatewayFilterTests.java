@@ -0,0 +1,152 @@
+package com.fis.booklibrary.casestudy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+
+import com.fis.booklibrary.casestudy.filter.SingleFlightGatewayFilterFactory;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+class SingleFlightGatewayFilterTests {
+
+	private static final Route ROUTE = Route.async().id("book-service-reads").uri("lb://book-service")
+			.predicate(exchange -> true).build();
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private final GatewayFilter filter = new SingleFlightGatewayFilterFactory(registry)
+			.apply(new SingleFlightGatewayFilterFactory.Config());
+	private final AtomicInteger upstreamCalls = new AtomicInteger();
+
+	@Test
+	public void concurrentIdenticalReadsShareOneUpstreamCall() {
+		List<MockServerWebExchange> exchanges = IntStream.range(0, 20)
+				.mapToObj(i -> exchange("/books/B1212", "gzip")).toList();
+		
+		Flux.fromIterable(exchanges).flatMap(exchange -> filter.filter(exchange, upstream(false))).blockLast();
+		
+		assertThat(upstreamCalls).hasValue(1);
+		for (MockServerWebExchange exchange : exchanges) {
+			assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+			assertThat(exchange.getResponse().getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
+			assertThat(exchange.getResponse().getBodyAsString().block()).isEqualTo("{\"bookId\":\"/books/B1212\"}");
+		}
+		assertThat(registry.get("gateway.single.flight.collapse.ratio").tag("route", "book-service-reads").gauge().value())
+				.isEqualTo(19 / 20.0);
+		
+		//Once the call completed the next read goes upstream again
+		filter.filter(exchange("/books/B1212", "gzip"), upstream(false)).block();
+		assertThat(upstreamCalls).hasValue(2);
+	}
+	
+	@Test
+	public void differentKeysAreNotCollapsed() {
+		MockServerWebExchange session = exchange("/books/B1212", "gzip");
+		MockServerWebExchange otherSession = MockServerWebExchange.from(MockServerHttpRequest.get("/books/B1212")
+				.header(HttpHeaders.ACCEPT_ENCODING, "gzip").header(HttpHeaders.COOKIE, "SESSION=other"));
+		otherSession.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, ROUTE);
+		Flux.just(session, otherSession, exchange("/books/B1212", "identity"), exchange("/books/B4232", "gzip"))
+				.flatMap(exchange -> filter.filter(exchange, upstream(false))).blockLast();
+		
+		assertThat(upstreamCalls).hasValue(4);
+	}
+	
+	@Test
+	public void sharedResponsesLeaveOutCookiesAndHopByHopHeaders() {
+		MockServerWebExchange leader = exchange("/books/B1212", "gzip");
+		MockServerWebExchange follower = exchange("/books/B1212", "gzip");
+		
+		Flux.just(leader, follower).flatMap(exchange -> filter.filter(exchange, upstream(HttpStatus.OK))).blockLast();
+		
+		assertThat(upstreamCalls).hasValue(1);
+		assertThat(leader.getResponse().getHeaders()).containsKeys(HttpHeaders.SET_COOKIE, "Keep-Alive", "X-Upstream-Hint");
+		assertThat(follower.getResponse().getHeaders()).doesNotContainKeys(HttpHeaders.SET_COOKIE, HttpHeaders.CONNECTION,
+				"Keep-Alive", "X-Upstream-Hint");
+		assertThat(follower.getResponse().getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
+	}
+	
+	@Test
+	public void errorResponsesAreNotShared() {
+		for (HttpStatus status : List.of(HttpStatus.SERVICE_UNAVAILABLE, HttpStatus.TOO_MANY_REQUESTS, HttpStatus.NOT_FOUND)) {
+			upstreamCalls.set(0);
+			Flux.just(exchange("/books/B1212", "gzip"), exchange("/books/B1212", "gzip"))
+					.flatMap(exchange -> filter.filter(exchange, upstream(status))).blockLast();
+			
+			//Only a 404 is the same answer for everyone
+			assertThat(upstreamCalls).hasValue(status == HttpStatus.NOT_FOUND ? 1 : 2);
+		}
+	}
+	
+	@Test
+	public void followersGoUpstreamWhenLeaderFails() {
+		MockServerWebExchange leader = exchange("/books/B1212", "gzip");
+		MockServerWebExchange follower = exchange("/books/B1212", "gzip");
+		
+		Mono<Void> failing = filter.filter(leader, upstream(true)).onErrorResume(e -> Mono.empty());
+		Mono<Void> following = filter.filter(follower, upstream(false));
+		Flux.merge(failing, following).blockLast();
+		
+		assertThat(upstreamCalls).hasValue(2);
+		assertThat(follower.getResponse().getBodyAsString().block()).isEqualTo("{\"bookId\":\"/books/B1212\"}");
+	}
+	
+	private MockServerWebExchange exchange(String path, String acceptEncoding) {
+		MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get(path)
+				.header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding));
+		exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, ROUTE);
+		return exchange;
+	}
+	
+	/**
+	 * Stands in for the routing filters, answering after a delay so the
+	 * requests overlap
+	 */
+	private GatewayFilterChain upstream(boolean fail) {
+		return exchange -> Mono.delay(Duration.ofMillis(200)).then(Mono.defer(() -> {
+			upstreamCalls.incrementAndGet();
+			if (fail) {
+				return Mono.error(new IllegalStateException("upstream down"));
+			}
+			return respond(exchange, HttpStatus.OK);
+		}));
+	}
+	
+	/**
+	 * Answers with the status, a session cookie and connection headers
+	 */
+	private GatewayFilterChain upstream(HttpStatus status) {
+		return exchange -> Mono.delay(Duration.ofMillis(200)).then(Mono.defer(() -> {
+			upstreamCalls.incrementAndGet();
+			exchange.getResponse().getHeaders().add(HttpHeaders.SET_COOKIE, "SESSION=leader");
+			exchange.getResponse().getHeaders().add(HttpHeaders.CONNECTION, "Keep-Alive, X-Upstream-Hint");
+			exchange.getResponse().getHeaders().add("Keep-Alive", "timeout=5");
+			exchange.getResponse().getHeaders().add("X-Upstream-Hint", "leader");
+			return respond(exchange, status);
+		}));
+	}
+	
+	private Mono<Void> respond(ServerWebExchange exchange, HttpStatus status) {
+		exchange.getResponse().setStatusCode(status);
+		exchange.getResponse().getHeaders().setContentType(MediaType.APPLICATION_JSON);
+		byte[] body = ("{\"bookId\":\"" + exchange.getRequest().getPath() + "\"}").getBytes(StandardCharsets.UTF_8);
+		return exchange.getResponse().writeWith(Mono.just(exchange.getResponse().bufferFactory().wrap(body)));
+	}
+}
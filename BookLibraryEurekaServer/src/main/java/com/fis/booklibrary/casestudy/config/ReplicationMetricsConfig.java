@@ -0,0 +1,23 @@
+package com.fis.booklibrary.casestudy.config;
+
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.fis.booklibrary.casestudy.replication.ReplicationBatchFilter;
+import com.fis.booklibrary.casestudy.replication.ReplicationMetrics;
+
+/**
+ * Registers the filter measuring batched peer replication requests
+ */
+@Configuration
+public class ReplicationMetricsConfig {
+
+	@Bean
+	public FilterRegistrationBean<ReplicationBatchFilter> replicationBatchFilter(ReplicationMetrics replicationMetrics) {
+		FilterRegistrationBean<ReplicationBatchFilter> registration = new FilterRegistrationBean<>(
+				new ReplicationBatchFilter(replicationMetrics));
+		registration.addUrlPatterns("/eureka/peerreplication/batch", "/eureka/peerreplication/batch/*");
+		return registration;
+	}
+}
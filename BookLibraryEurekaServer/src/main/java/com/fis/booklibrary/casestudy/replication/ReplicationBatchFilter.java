@@ -0,0 +1,108 @@
+package com.fis.booklibrary.casestudy.replication;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Counts the replication tasks in each batch a peer sends to
+ * /eureka/peerreplication/batch and hands the body on to Eureka unchanged.
+ */
+public class ReplicationBatchFilter extends OncePerRequestFilter {
+
+	private static final Logger logger = Logger.getLogger(ReplicationBatchFilter.class.getName());
+
+	private final ReplicationMetrics replicationMetrics;
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	public ReplicationBatchFilter(ReplicationMetrics replicationMetrics) {
+		this.replicationMetrics = replicationMetrics;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		if (!"POST".equals(request.getMethod()) || request.getHeader("Content-Encoding") != null) {
+			filterChain.doFilter(request, response);
+			return;
+		}
+		byte[] body = request.getInputStream().readAllBytes();
+		try {
+			JsonNode replicationList = objectMapper.readTree(body).path("replicationList");
+			replicationMetrics.recordBatch(replicationList.size());
+		} catch (IOException e) {
+			logger.log(Level.FINE, "Could not count replication batch", e);
+		}
+		filterChain.doFilter(new CachedBodyRequest(request, body), response);
+	}
+
+	private static class CachedBodyRequest extends HttpServletRequestWrapper {
+
+		private final byte[] body;
+
+		CachedBodyRequest(HttpServletRequest request, byte[] body) {
+			super(request);
+			this.body = body;
+		}
+
+		@Override
+		public ServletInputStream getInputStream() {
+			ByteArrayInputStream input = new ByteArrayInputStream(body);
+			return new ServletInputStream() {
+
+				@Override
+				public int read() {
+					return input.read();
+				}
+
+				@Override
+				public int read(byte[] buffer, int offset, int length) {
+					return input.read(buffer, offset, length);
+				}
+
+				@Override
+				public boolean isFinished() {
+					return input.available() == 0;
+				}
+
+				@Override
+				public boolean isReady() {
+					return true;
+				}
+
+				@Override
+				public void setReadListener(ReadListener readListener) {
+					// The body is already in memory, all of it can be read now
+					try {
+						readListener.onDataAvailable();
+						readListener.onAllDataRead();
+					} catch (IOException e) {
+						readListener.onError(e);
+					}
+				}
+			};
+		}
+
+		@Override
+		public BufferedReader getReader() {
+			return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package com.fis.booklibrary.casestudy.replication;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.netflix.eureka.server.event.EurekaInstanceRegisteredEvent;
+import org.springframework.cloud.netflix.eureka.server.event.EurekaRegistryAvailableEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.eureka.cluster.PeerEurekaNodes;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Peer replication metrics as seen by the receiving Eureka node:
+ * eureka.replication.batch.size - replication tasks per batch request,
+ * eureka.replication.lag - delay between a registration on its origin peer
+ * and its arrival here, eureka.replication.peers - number of peers.
+ * The lag is only timed once the registry is available: the registrations
+ * copied from a peer by the startup sync are flagged as replications too,
+ * with the timestamps of their original registration.
+ */
+@Lazy(false)
+@Component
+public class ReplicationMetrics {
+
+	private final DistributionSummary batchSize;
+	private final Timer replicationLag;
+	// Looked up on read, the peer nodes depend on beans created after the servlet filters
+	private final ObjectProvider<PeerEurekaNodes> peerEurekaNodes;
+	private volatile boolean syncedUp;
+
+	public ReplicationMetrics(MeterRegistry meterRegistry, ObjectProvider<PeerEurekaNodes> peerEurekaNodes) {
+		this.peerEurekaNodes = peerEurekaNodes;
+		this.batchSize = DistributionSummary.builder("eureka.replication.batch.size")
+				.description("Replication tasks received per batch request")
+				.baseUnit("tasks")
+				.publishPercentiles(0.5, 0.99)
+				.register(meterRegistry);
+		this.replicationLag = Timer.builder("eureka.replication.lag")
+				.description("Delay between a registration on its origin peer and its replication to this node")
+				.publishPercentiles(0.5, 0.99)
+				.register(meterRegistry);
+		Gauge.builder("eureka.replication.peers", this, metrics -> metrics.peerCount())
+				.description("Number of peers this node replicates to")
+				.register(meterRegistry);
+	}
+
+	private int peerCount() {
+		PeerEurekaNodes nodes = peerEurekaNodes.getIfAvailable();
+		return nodes != null ? nodes.getPeerEurekaNodes().size() : 0;
+	}
+
+	public void recordBatch(int tasks) {
+		batchSize.record(tasks);
+	}
+
+	/**
+	 * Published once the startup sync with the peers is done and the registry is open for traffic
+	 */
+	@EventListener
+	public void onRegistryAvailable(EurekaRegistryAvailableEvent event) {
+		syncedUp = true;
+	}
+
+	@EventListener
+	public void onRegistered(EurekaInstanceRegisteredEvent event) {
+		InstanceInfo instanceInfo = event.getInstanceInfo();
+		if (syncedUp && event.isReplication() && instanceInfo != null && instanceInfo.getLastUpdatedTimestamp() > 0) {
+			long lag = System.currentTimeMillis() - instanceInfo.getLastUpdatedTimestamp();
+			replicationLag.record(Math.max(0, lag), TimeUnit.MILLISECONDS);
+		}
+	}
+}
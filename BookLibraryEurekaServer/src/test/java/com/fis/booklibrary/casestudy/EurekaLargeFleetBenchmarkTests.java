@@ -0,0 +1,249 @@
+package com.fis.booklibrary.casestudy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.config.YamlPropertiesFactoryBean;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.cloud.netflix.eureka.EurekaClientConfigBean;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import com.netflix.appinfo.LeaseInfo;
+
+/**
+ * Registry benchmark comparing the default settings with the large-fleet profile.
+ * Simulates a fleet of instances heartbeating and fetching registry deltas
+ * against an in-process Eureka server, and reports the CPU used by the
+ * server's request and registry threads and how long a newly registered
+ * instance takes to show up in the delta served to clients.
+ * Only the server runs with the profile. The simulated clients heartbeat and
+ * fetch at the intervals read from a service's application.yml and
+ * application-large-fleet.yml, the client code itself (backoff, caches) is
+ * not exercised.
+ *
+ * Run with: mvn test -Dtest=EurekaLargeFleetBenchmarkTests -Dbenchmark.eureka=true
+ * (optionally -Dbenchmark.eureka.instances=500 -Dbenchmark.eureka.durationSeconds=120
+ * -Dbenchmark.eureka.clientConfig=../SubscriptionService/src/main/resources)
+ */
+@EnabledIfSystemProperty(named = "benchmark.eureka", matches = "true")
+class EurekaLargeFleetBenchmarkTests {
+
+	private static final String APP = "BENCH-APP";
+
+	private final int instances = Integer.getInteger("benchmark.eureka.instances", 300);
+	private final int durationSeconds = Integer.getInteger("benchmark.eureka.durationSeconds", 60);
+	private final Path clientConfig = Path.of(System.getProperty("benchmark.eureka.clientConfig",
+			"../BookService/src/main/resources"));
+
+	private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+
+	@Test
+	void compareDefaultAndLargeFleetModes() throws Exception {
+		Properties defaultClient = clientProperties("application.yml");
+		Properties largeFleetClient = clientProperties("application.yml", "application-large-fleet.yml");
+		Result defaults = run("default", renewalInterval(defaultClient), fetchInterval(defaultClient));
+		Result largeFleet = run("large-fleet", renewalInterval(largeFleetClient), fetchInterval(largeFleetClient));
+
+		System.out.println();
+		System.out.println("Eureka registry benchmark: " + instances + " instances, " + durationSeconds + "s per mode, "
+				+ "server profile only, client intervals from " + clientConfig);
+		System.out.println(String.format("%-12s %10s %10s %14s %14s %18s %18s", "mode", "renewal s", "fetch s",
+				"requests/s", "server cpu %", "propagation p50 ms", "propagation max ms"));
+		for (Result result : List.of(defaults, largeFleet)) {
+			System.out.println(String.format("%-12s %10d %10d %14.1f %14.2f %18d %18d", result.mode,
+					result.renewalIntervalSeconds, result.fetchIntervalSeconds, result.requestsPerSecond,
+					result.serverCpuPercent, result.propagationP50Ms, result.propagationMaxMs));
+		}
+		System.out.println("Client-side propagation adds up to registryFetchIntervalSeconds on top of the server delay.");
+
+		assertThat(defaults.propagationP50Ms).isPositive();
+		assertThat(largeFleet.propagationP50Ms).isPositive();
+	}
+
+	/**
+	 * Client settings of a service, later files overriding earlier ones as Spring profiles do
+	 */
+	private Properties clientProperties(String... files) {
+		YamlPropertiesFactoryBean yaml = new YamlPropertiesFactoryBean();
+		yaml.setResources(List.of(files).stream().map(file -> new FileSystemResource(clientConfig.resolve(file)))
+				.toArray(Resource[]::new));
+		return yaml.getObject();
+	}
+
+	private int renewalInterval(Properties client) {
+		return Integer.parseInt(client.getProperty("eureka.instance.leaseRenewalIntervalInSeconds",
+				String.valueOf(LeaseInfo.DEFAULT_LEASE_RENEWAL_INTERVAL)));
+	}
+
+	private int fetchInterval(Properties client) {
+		return Integer.parseInt(client.getProperty("eureka.client.registryFetchIntervalSeconds",
+				String.valueOf(new EurekaClientConfigBean().getRegistryFetchIntervalSeconds())));
+	}
+
+	private Result run(String profile, int renewalIntervalSeconds, int fetchIntervalSeconds) throws Exception {
+		int port = freePort();
+		// Point the server at itself so it has no peers to replicate to
+		SpringApplicationBuilder builder = new SpringApplicationBuilder(BookLibraryEurekaServerApplication.class);
+		if (!"default".equals(profile)) {
+			builder.profiles(profile);
+		}
+		try (ConfigurableApplicationContext context = builder.run("--server.port=" + port,
+				"--eureka.instance.hostname=localhost",
+				"--eureka.client.serviceUrl.defaultZone=http://localhost:" + port + "/eureka/",
+				"--spring.cloud.compatibility-verifier.enabled=false")) {
+			String baseUrl = "http://localhost:" + port + "/eureka";
+			AtomicLong requests = new AtomicLong();
+			ScheduledExecutorService fleet = Executors.newScheduledThreadPool(16);
+			try {
+				for (int i = 0; i < instances; i++) {
+					String instanceId = profile + "-" + i;
+					register(baseUrl, instanceId, renewalIntervalSeconds);
+					long renewalDelay = ThreadLocalRandom.current().nextLong(renewalIntervalSeconds * 1000L);
+					fleet.scheduleAtFixedRate(() -> send(requests, heartbeat(baseUrl, instanceId)),
+							renewalDelay, renewalIntervalSeconds * 1000L, TimeUnit.MILLISECONDS);
+					long fetchDelay = ThreadLocalRandom.current().nextLong(fetchIntervalSeconds * 1000L);
+					fleet.scheduleAtFixedRate(() -> send(requests, get(baseUrl + "/apps/delta")),
+							fetchDelay, fetchIntervalSeconds * 1000L, TimeUnit.MILLISECONDS);
+				}
+
+				requests.set(0);
+				Map<Long, Long> cpuBefore = serverThreadCpu();
+				long start = System.nanoTime();
+				List<Long> propagation = new ArrayList<>();
+				int probe = 0;
+				while (System.nanoTime() - start < TimeUnit.SECONDS.toNanos(durationSeconds)) {
+					propagation.add(measurePropagation(baseUrl, profile + "-probe-" + probe++, renewalIntervalSeconds));
+				}
+				long elapsedNanos = System.nanoTime() - start;
+				long serverCpuNanos = cpuDelta(cpuBefore, serverThreadCpu());
+
+				Collections.sort(propagation);
+				Result result = new Result();
+				result.mode = profile;
+				result.renewalIntervalSeconds = renewalIntervalSeconds;
+				result.fetchIntervalSeconds = fetchIntervalSeconds;
+				result.requestsPerSecond = requests.get() / (elapsedNanos / 1e9);
+				result.serverCpuPercent = 100.0 * serverCpuNanos / elapsedNanos;
+				result.propagationP50Ms = propagation.get(propagation.size() / 2);
+				result.propagationMaxMs = propagation.get(propagation.size() - 1);
+				return result;
+			} finally {
+				fleet.shutdownNow();
+			}
+		}
+	}
+
+	private int freePort() throws Exception {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+
+	private long measurePropagation(String baseUrl, String instanceId, int renewalIntervalSeconds) throws Exception {
+		long registeredAt = System.nanoTime();
+		register(baseUrl, instanceId, renewalIntervalSeconds);
+		while (!http.send(get(baseUrl + "/apps/delta"), HttpResponse.BodyHandlers.ofString()).body().contains(instanceId)) {
+			if (System.nanoTime() - registeredAt > TimeUnit.SECONDS.toNanos(120)) {
+				break;
+			}
+			Thread.sleep(100);
+		}
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - registeredAt);
+	}
+
+	private void register(String baseUrl, String instanceId, int renewalIntervalSeconds) throws Exception {
+		String body = "{\"instance\":{\"instanceId\":\"" + instanceId + "\",\"hostName\":\"localhost\",\"app\":\"" + APP
+				+ "\",\"ipAddr\":\"127.0.0.1\",\"status\":\"UP\",\"vipAddress\":\"bench-app\","
+				+ "\"port\":{\"$\":8080,\"@enabled\":\"true\"},"
+				+ "\"leaseInfo\":{\"renewalIntervalInSecs\":" + renewalIntervalSeconds
+				+ ",\"durationInSecs\":" + (renewalIntervalSeconds * 3) + "},"
+				+ "\"dataCenterInfo\":{\"@class\":\"com.netflix.appinfo.InstanceInfo$DefaultDataCenterInfo\",\"name\":\"MyOwn\"}}}";
+		HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/apps/" + APP))
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString(body))
+				.build();
+		http.send(request, HttpResponse.BodyHandlers.discarding());
+	}
+
+	private HttpRequest heartbeat(String baseUrl, String instanceId) {
+		return HttpRequest.newBuilder(URI.create(baseUrl + "/apps/" + APP + "/" + instanceId + "?status=UP"))
+				.PUT(HttpRequest.BodyPublishers.noBody())
+				.build();
+	}
+
+	private HttpRequest get(String url) {
+		return HttpRequest.newBuilder(URI.create(url)).header("Accept", "application/json").GET().build();
+	}
+
+	private void send(AtomicLong requests, HttpRequest request) {
+		try {
+			http.send(request, HttpResponse.BodyHandlers.discarding());
+			requests.incrementAndGet();
+		} catch (Exception e) {
+			// Timeouts under load are part of what is being measured
+		}
+	}
+
+	/**
+	 * CPU time of the threads doing the server's work: Tomcat request threads
+	 * and Eureka's registry, cache and eviction timers
+	 */
+	private Map<Long, Long> serverThreadCpu() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		Map<Long, Long> cpu = new HashMap<>();
+		for (ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds())) {
+			if (info == null) {
+				continue;
+			}
+			String name = info.getThreadName();
+			if (name.startsWith("http-nio") || name.startsWith("Eureka") || name.startsWith("eureka")
+					|| name.contains("Registry") || name.contains("CacheFillTimer") || name.startsWith("Timer")) {
+				cpu.put(info.getThreadId(), threads.getThreadCpuTime(info.getThreadId()));
+			}
+		}
+		return cpu;
+	}
+
+	private long cpuDelta(Map<Long, Long> before, Map<Long, Long> after) {
+		long total = 0;
+		for (Map.Entry<Long, Long> entry : after.entrySet()) {
+			total += Math.max(0, entry.getValue() - before.getOrDefault(entry.getKey(), 0L));
+		}
+		return total;
+	}
+
+	private static class Result {
+		String mode;
+		int renewalIntervalSeconds;
+		int fetchIntervalSeconds;
+		double requestsPerSecond;
+		double serverCpuPercent;
+		long propagationP50Ms;
+		long propagationMaxMs;
+	}
+}
@@ -0,0 +1,82 @@
+package com.fis.booklibrary.casestudy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.netflix.eureka.server.event.EurekaInstanceRegisteredEvent;
+import org.springframework.cloud.netflix.eureka.server.event.EurekaRegistryAvailableEvent;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.fis.booklibrary.casestudy.replication.ReplicationBatchFilter;
+import com.fis.booklibrary.casestudy.replication.ReplicationMetrics;
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.eureka.EurekaServerConfig;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+
+class ReplicationMetricsTests {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@SuppressWarnings("unchecked")
+	private final ReplicationMetrics replicationMetrics = new ReplicationMetrics(meterRegistry, mock(ObjectProvider.class));
+
+	@Test
+	public void startupSyncIsNotTimedAsReplicationLag() {
+		//Copied from a peer at startup, registered an hour ago
+		replicationMetrics.onRegistered(registered(System.currentTimeMillis() - 3_600_000));
+		assertThat(meterRegistry.get("eureka.replication.lag").timer().count()).isZero();
+
+		replicationMetrics.onRegistryAvailable(new EurekaRegistryAvailableEvent(mock(EurekaServerConfig.class)));
+		replicationMetrics.onRegistered(registered(System.currentTimeMillis()));
+		assertThat(meterRegistry.get("eureka.replication.lag").timer().count()).isEqualTo(1);
+	}
+
+	@Test
+	public void bufferedBatchCanBeReadAsynchronously() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/eureka/peerreplication/batch");
+		request.setContent("{\"replicationList\":[{},{}]}".getBytes(StandardCharsets.UTF_8));
+		ByteArrayOutputStream read = new ByteArrayOutputStream();
+
+		new ReplicationBatchFilter(replicationMetrics).doFilter(request, new MockHttpServletResponse(),
+				(filteredRequest, response) -> {
+					ServletInputStream input = filteredRequest.getInputStream();
+					input.setReadListener(new ReadListener() {
+
+						@Override
+						public void onDataAvailable() throws IOException {
+							while (input.isReady() && !input.isFinished()) {
+								read.write(input.read());
+							}
+						}
+
+						@Override
+						public void onAllDataRead() {
+						}
+
+						@Override
+						public void onError(Throwable t) {
+							throw new AssertionError(t);
+						}
+					});
+				});
+
+		assertThat(read.toString(StandardCharsets.UTF_8)).isEqualTo("{\"replicationList\":[{},{}]}");
+		assertThat(meterRegistry.get("eureka.replication.batch.size").summary().totalAmount()).isEqualTo(2);
+	}
+
+	private static EurekaInstanceRegisteredEvent registered(long lastUpdatedTimestamp) {
+		InstanceInfo instanceInfo = InstanceInfo.Builder.newBuilder().setAppName("BOOK-SERVICE").setInstanceId("book-1")
+				.setLastUpdatedTimestamp(lastUpdatedTimestamp).build();
+		return new EurekaInstanceRegisteredEvent(ReplicationMetricsTests.class, instanceInfo, 90, true);
+	}
+}
@@ -0,0 +1,220 @@
+package com.fis.booklibrary.casestudy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+/**
+ * Startup benchmark for the fast-startup build profile.
+ * Launches the packaged jars of all four modules as separate JVMs, once as
+ * plain fat jars, once AOT processed with the AppCDS archive and once more
+ * with lazy initialization (the Eureka server gets the archive only), and
+ * reports per service the time from process start to the first successful
+ * request and to being UP in Eureka.
+ *
+ * Build every module first with: mvn -Pfast-startup package -DskipTests
+ * Run with: mvn test -Dtest=StartupBenchmarkTests -Dbenchmark.startup=true
+ * (optionally -Dbenchmark.startup.runs=5)
+ */
+@EnabledIfSystemProperty(named = "benchmark.startup", matches = "true")
+class StartupBenchmarkTests {
+
+	private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(300);
+
+	private static final List<Service> CLIENTS = List.of(
+			new Service("BookService", "BOOK-SERVICE", "/books", true),
+			new Service("SubscriptionService", "SUBSCRIPTION-SERVICE", "/subscriptions", true),
+			new Service("ApiGatewayService", "API-GATEWAY-SERVICE", "/actuator/health", true));
+
+	// The Eureka server is not AOT processed, its archive covers the plain classes
+	private static final Service EUREKA = new Service("BookLibraryEurekaServer", null, "/eureka/apps", false);
+
+	private final int runs = Integer.getInteger("benchmark.startup.runs", 3);
+
+	private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+
+	private final Path logs = Path.of("target", "startup-benchmark");
+
+	@Test
+	void compareStartupModes() throws Exception {
+		Files.createDirectories(logs);
+		List<Result> results = new ArrayList<>();
+		for (Mode mode : Mode.values()) {
+			List<List<Timing>> timings = new ArrayList<>();
+			for (int run = 0; run < runs; run++) {
+				timings.add(run(mode, run));
+			}
+			for (int i = 0; i <= CLIENTS.size(); i++) {
+				final int service = i;
+				results.add(new Result(i == 0 ? EUREKA.module : CLIENTS.get(i - 1).module, mode,
+						median(timings.stream().map(run -> run.get(service).firstRequestMs).toList()),
+						median(timings.stream().map(run -> run.get(service).registeredMs).toList())));
+			}
+		}
+
+		System.out.println();
+		System.out.println("Startup benchmark: median of " + runs + " runs, ms from process start");
+		System.out.println(String.format("%-24s %-14s %16s %16s", "service", "mode", "first request", "registered"));
+		for (Result result : results) {
+			System.out.println(String.format("%-24s %-14s %16d %16s", result.module, result.mode.label,
+					result.firstRequestMs, result.registeredMs < 0 ? "-" : Long.toString(result.registeredMs)));
+		}
+
+		assertThat(results).allMatch(result -> result.firstRequestMs > 0);
+	}
+
+	/**
+	 * Start the registry, then each client in turn, the way instances are
+	 * added when scaling out
+	 */
+	private List<Timing> run(Mode mode, int run) throws Exception {
+		List<Process> processes = new ArrayList<>();
+		List<Timing> timings = new ArrayList<>();
+		try {
+			int eurekaPort = freePort();
+			String defaultZone = "http://localhost:" + eurekaPort + "/eureka/";
+			long started = System.nanoTime();
+			processes.add(start(EUREKA, mode, run, eurekaPort, "--eureka.instance.hostname=localhost",
+					"--eureka.client.serviceUrl.defaultZone=" + defaultZone,
+					"--eureka.server.use-read-only-response-cache=false"));
+			timings.add(new Timing(awaitFirstRequest("http://localhost:" + eurekaPort + EUREKA.path, started), -1));
+
+			for (Service client : CLIENTS) {
+				int port = freePort();
+				started = System.nanoTime();
+				Process process = start(client, mode, run, port, "--eureka.client.serviceUrl.defaultZone=" + defaultZone);
+				processes.add(process);
+				long registeredMs = -1;
+				long firstRequestMs = -1;
+				while (registeredMs < 0 || firstRequestMs < 0) {
+					long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+					if (firstRequestMs < 0 && isOk("http://localhost:" + port + client.path)) {
+						firstRequestMs = elapsedMs;
+					}
+					if (registeredMs < 0 && isOk(defaultZone + "apps/" + client.appName, "\"UP\"")) {
+						registeredMs = elapsedMs;
+					}
+					assertThat(process.isAlive()).as(client.module + " exited, see " + logs).isTrue();
+					assertThat(System.nanoTime() - started).as(client.module + " did not start").isLessThan(TIMEOUT_NANOS);
+					Thread.sleep(20);
+				}
+				timings.add(new Timing(firstRequestMs, registeredMs));
+			}
+			return timings;
+		} finally {
+			Collections.reverse(processes);
+			for (Process process : processes) {
+				process.destroy();
+				if (!process.waitFor(30, TimeUnit.SECONDS)) {
+					process.destroyForcibly();
+				}
+			}
+		}
+	}
+
+	private Process start(Service service, Mode mode, int run, int port, String... args) throws IOException {
+		Path target = Path.of("..", service.module, "target");
+		List<String> command = new ArrayList<>();
+		command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+		command.add("-Dspring.cloud.compatibility-verifier.enabled=false");
+		// SubscriptionService declares restTemplate twice
+		command.add("-Dspring.main.allow-bean-definition-overriding=true");
+		if (mode == Mode.PLAIN) {
+			command.add("-jar");
+			command.add(jar(target).toString());
+		} else {
+			Path cds = target.resolve("cds");
+			assertThat(cds.resolve("application.jsa")).as("Build " + service.module + " with -Pfast-startup").exists();
+			command.add("-XX:SharedArchiveFile=" + cds.resolve("application.jsa"));
+			command.add("-Dspring.aot.enabled=" + service.aot);
+			command.add("-Dspring.main.lazy-initialization=" + (mode == Mode.AOT_CDS_LAZY));
+			command.add("-jar");
+			command.add(jar(cds).toString());
+		}
+		command.add("--server.port=" + port);
+		command.addAll(List.of(args));
+		File log = logs.resolve(mode.label + "-" + service.module + "-" + run + ".log").toFile();
+		return new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start();
+	}
+
+	private Path jar(Path directory) throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(file -> file.getFileName().toString().endsWith(".jar")).findFirst()
+					.orElseThrow(() -> new IllegalStateException("No jar in " + directory + ", run mvn package first"));
+		}
+	}
+
+	private long awaitFirstRequest(String url, long started) throws InterruptedException {
+		while (!isOk(url)) {
+			assertThat(System.nanoTime() - started).as(url + " did not respond").isLessThan(TIMEOUT_NANOS);
+			Thread.sleep(20);
+		}
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+	}
+
+	private boolean isOk(String url) {
+		return isOk(url, "");
+	}
+
+	private boolean isOk(String url, String expected) {
+		try {
+			HttpRequest request = HttpRequest.newBuilder(URI.create(url)).header("Accept", "application/json")
+					.timeout(Duration.ofSeconds(5)).GET().build();
+			HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+			return response.statusCode() == 200 && response.body().contains(expected);
+		} catch (IOException e) {
+			return false;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private int freePort() throws Exception {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+
+	private long median(List<Long> values) {
+		List<Long> sorted = new ArrayList<>(values);
+		Collections.sort(sorted);
+		return sorted.get(sorted.size() / 2);
+	}
+
+	private enum Mode {
+		PLAIN("plain"), AOT_CDS("aot+cds"), AOT_CDS_LAZY("aot+cds+lazy");
+
+		private final String label;
+
+		Mode(String label) {
+			this.label = label;
+		}
+	}
+
+	private record Service(String module, String appName, String path, boolean aot) {
+	}
+
+	private record Timing(long firstRequestMs, long registeredMs) {
+	}
+
+	private record Result(String module, Mode mode, long firstRequestMs, long registeredMs) {
+	}
+}
@@ -9,17 +9,19 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 import org.springframework.cloud.openfeign.EnableFeignClients;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import com.fis.booklibrary.casestudy.model.Book;
-import com.fis.booklibrary.casestudy.repository.BookRepository;
+import com.fis.booklibrary.casestudy.service.BookService;
 
 @SpringBootApplication
 @EnableDiscoveryClient
 @EnableFeignClients
+@EnableScheduling
 public class BookApplication implements CommandLineRunner{
 
 	@Autowired
-	private BookRepository bookRepository;
+	private BookService bookService;
 	
 	public static void main(String[] args) {
 		SpringApplication.run(BookApplication.class, args);
@@ -34,7 +36,7 @@ public class BookApplication implements CommandLineRunner{
 		books.add(b1);
 		books.add(b2);
 		
-		bookRepository.saveAll(books);
+		bookService.saveBooks(books);
 	}
 
 }
@@ -0,0 +1,28 @@
+package com.fis.booklibrary.casestudy.catalog;
+
+import com.fis.booklibrary.casestudy.model.Book;
+
+/**
+ * Read-only view of one title in a {@link CompactCatalog}.
+ * Values are read from the catalog on every call, so a view always shows
+ * the current copy counts of its title.
+ */
+public interface BookView {
+
+	String getBookId();
+
+	String getBookName();
+
+	String getAuthor();
+
+	int getCopiesAvailable();
+
+	int getTotalCopies();
+
+	/**
+	 * @return detached Book entity with the current values
+	 */
+	default Book toBook() {
+		return new Book(getBookId(), getBookName(), getAuthor(), getCopiesAvailable(), getTotalCopies());
+	}
+}
@@ -0,0 +1,39 @@
+package com.fis.booklibrary.casestudy.catalog;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import com.fis.booklibrary.casestudy.service.BookCatalogService;
+
+/**
+ * Actuator endpoint reporting the size of the in-memory catalog and
+ * the snapshot served while it loads.
+ * GET /actuator/catalog
+ */
+@Component
+@Endpoint(id = "catalog")
+public class CatalogEndpoint {
+
+	@Autowired
+	private BookCatalogService bookCatalogService;
+
+	@ReadOperation
+	public Map<String, Object> catalog() {
+		CompactCatalog catalog = bookCatalogService.getCatalog();
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("titles", catalog.size());
+		result.put("authors", catalog.authorCount());
+		result.put("allocatedBytes", catalog.allocatedBytes());
+		result.put("caughtUp", bookCatalogService.isCaughtUp());
+		bookCatalogService.getWarmSnapshot().ifPresent(snapshot -> {
+			result.put("snapshotSequence", snapshot.getSequence());
+			result.put("snapshotTitles", snapshot.size());
+		});
+		return result;
+	}
+}
@@ -0,0 +1,449 @@
+package com.fis.booklibrary.casestudy.catalog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import com.fis.booklibrary.casestudy.model.Book;
+
+/**
+ * Memory-lean in-memory catalog of titles, laid out column-wise.
+ * Instead of one Book object and three Strings per title it keeps
+ * - bookIds and bookNames as length-prefixed UTF-8 in one shared byte pool,
+ *   referenced by an int offset per row
+ * - authors dictionary encoded, one int code per row
+ * - copy counts in primitive int arrays
+ * - an open addressing index from bookId to row, holding ints only
+ * which is roughly 30 bytes per title on top of the text itself.
+ * Titles can be added and updated but not removed. Reads go through
+ * {@link BookView}, writes take a write lock. The same layout is written
+ * to disk as a snapshot and read back in place by {@link MappedCatalog}.
+ */
+public class CompactCatalog {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private int size;
+	private long version;
+	private int[] idOffsets = new int[INITIAL_CAPACITY];
+	private int[] nameOffsets = new int[INITIAL_CAPACITY];
+	private int[] authorCodes = new int[INITIAL_CAPACITY];
+	private int[] copiesAvailable = new int[INITIAL_CAPACITY];
+	private int[] totalCopies = new int[INITIAL_CAPACITY];
+
+	private byte[] pool = new byte[INITIAL_CAPACITY * 16];
+	private int poolSize;
+
+	private final List<String> authors = new ArrayList<>();
+	private final Map<String, Integer> authorIndex = new HashMap<>();
+
+	// row + 1 per slot, 0 marks an empty slot
+	private int[] slots = new int[INITIAL_CAPACITY * 2];
+
+	/**
+	 * Add a title or replace the values of an existing one
+	 * @param book title to store
+	 */
+	public void put(Book book) {
+		byte[] id = book.getBookId().getBytes(StandardCharsets.UTF_8);
+		lock.writeLock().lock();
+		try {
+			int row = find(id);
+			if (row < 0) {
+				row = append(id);
+			}
+			if (!poolEquals(nameOffsets[row], book.getBookName())) {
+				// The old name stays in the pool, names change rarely enough not to compact
+				nameOffsets[row] = appendText(book.getBookName());
+			}
+			authorCodes[row] = authorCode(book.getAuthor());
+			copiesAvailable[row] = book.getCopiesAvailable();
+			totalCopies[row] = book.getTotalCopies();
+			version++;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Update the available copies of a stored title
+	 * @param bookId title to update
+	 * @param copies copies available
+	 * @return false if the title is not in the catalog
+	 */
+	public boolean updateCopiesAvailable(String bookId, int copies) {
+		byte[] id = bookId.getBytes(StandardCharsets.UTF_8);
+		lock.writeLock().lock();
+		try {
+			int row = find(id);
+			if (row < 0) {
+				return false;
+			}
+			copiesAvailable[row] = copies;
+			version++;
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public Optional<BookView> get(String bookId) {
+		byte[] id = bookId.getBytes(StandardCharsets.UTF_8);
+		lock.readLock().lock();
+		try {
+			int row = find(id);
+			return row < 0 ? Optional.empty() : Optional.of(new RowView(row));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Visit every title in insertion order. Titles added while iterating are not visited.
+	 * @param action called with a view per title
+	 */
+	public void forEach(Consumer<BookView> action) {
+		int rows = size();
+		for (int row = 0; row < rows; row++) {
+			action.accept(new RowView(row));
+		}
+	}
+
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return size;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public int authorCount() {
+		lock.readLock().lock();
+		try {
+			return authors.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return number of writes so far, to tell whether a snapshot is out of date
+	 */
+	public long version() {
+		lock.readLock().lock();
+		try {
+			return version;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Write the catalog in the snapshot format read by {@link MappedCatalog}
+	 * @param out destination
+	 * @param sequence snapshot number recorded in the header
+	 * @return catalog version written
+	 * @throws IOException if writing fails
+	 */
+	public long writeSnapshot(DataOutputStream out, long sequence) throws IOException {
+		lock.readLock().lock();
+		try {
+			// Authors use the pool encoding too, in a pool of their own
+			ByteArrayOutputStream authorPool = new ByteArrayOutputStream();
+			int[] authorOffsets = new int[authors.size()];
+			for (int code = 0; code < authors.size(); code++) {
+				String author = authors.get(code);
+				if (author == null) {
+					authorOffsets[code] = -1;
+					continue;
+				}
+				byte[] bytes = author.getBytes(StandardCharsets.UTF_8);
+				authorOffsets[code] = authorPool.size();
+				for (int length = bytes.length;; length >>>= 7) {
+					if (length < 0x80) {
+						authorPool.write(length);
+						break;
+					}
+					authorPool.write(length | 0x80);
+				}
+				authorPool.write(bytes, 0, bytes.length);
+			}
+			out.writeInt(MappedCatalog.MAGIC);
+			out.writeInt(MappedCatalog.FORMAT_VERSION);
+			out.writeLong(sequence);
+			out.writeLong(System.currentTimeMillis());
+			out.writeInt(size);
+			out.writeInt(authors.size());
+			out.writeInt(slots.length);
+			out.writeInt(poolSize);
+			out.writeInt(authorPool.size());
+			for (int row = 0; row < size; row++) {
+				out.writeInt(idOffsets[row]);
+				out.writeInt(nameOffsets[row]);
+				out.writeInt(authorCodes[row]);
+				out.writeInt(copiesAvailable[row]);
+				out.writeInt(totalCopies[row]);
+			}
+			for (int slot : slots) {
+				out.writeInt(slot);
+			}
+			for (int offset : authorOffsets) {
+				out.writeInt(offset);
+			}
+			out.write(pool, 0, poolSize);
+			authorPool.writeTo(out);
+			return version;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return bytes allocated by the columns, the text pool and the index,
+	 * excluding the author dictionary
+	 */
+	public long allocatedBytes() {
+		lock.readLock().lock();
+		try {
+			return 5L * 4 * idOffsets.length + pool.length + 4L * slots.length;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Release the spare capacity left by growth, e.g. after a bulk load
+	 */
+	public void trimToSize() {
+		lock.writeLock().lock();
+		try {
+			int capacity = Math.max(size, 1);
+			idOffsets = Arrays.copyOf(idOffsets, capacity);
+			nameOffsets = Arrays.copyOf(nameOffsets, capacity);
+			authorCodes = Arrays.copyOf(authorCodes, capacity);
+			copiesAvailable = Arrays.copyOf(copiesAvailable, capacity);
+			totalCopies = Arrays.copyOf(totalCopies, capacity);
+			pool = Arrays.copyOf(pool, poolSize);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private int append(byte[] id) {
+		if (size == idOffsets.length) {
+			int capacity = idOffsets.length * 2;
+			idOffsets = Arrays.copyOf(idOffsets, capacity);
+			nameOffsets = Arrays.copyOf(nameOffsets, capacity);
+			authorCodes = Arrays.copyOf(authorCodes, capacity);
+			copiesAvailable = Arrays.copyOf(copiesAvailable, capacity);
+			totalCopies = Arrays.copyOf(totalCopies, capacity);
+		}
+		int row = size++;
+		idOffsets[row] = appendBytes(id);
+		nameOffsets[row] = -1;
+		if (size * 2 > slots.length) {
+			rehash(slots.length * 2);
+		} else {
+			insertSlot(id, row);
+		}
+		return row;
+	}
+
+	private int authorCode(String author) {
+		Integer code = authorIndex.get(author);
+		if (code == null) {
+			code = authors.size();
+			authors.add(author);
+			authorIndex.put(author, code);
+		}
+		return code;
+	}
+
+	private int find(byte[] id) {
+		int mask = slots.length - 1;
+		for (int slot = hash(id, 0, id.length) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+			int row = slots[slot] - 1;
+			if (poolEquals(idOffsets[row], id)) {
+				return row;
+			}
+		}
+		return -1;
+	}
+
+	private void insertSlot(byte[] id, int row) {
+		int mask = slots.length - 1;
+		int slot = hash(id, 0, id.length) & mask;
+		while (slots[slot] != 0) {
+			slot = (slot + 1) & mask;
+		}
+		slots[slot] = row + 1;
+	}
+
+	private void rehash(int capacity) {
+		slots = new int[capacity];
+		int mask = capacity - 1;
+		for (int row = 0; row < size; row++) {
+			int offset = idOffsets[row];
+			int length = readLength(offset);
+			int start = offset + lengthPrefixSize(length);
+			int slot = hash(pool, start, length) & mask;
+			while (slots[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			slots[slot] = row + 1;
+		}
+	}
+
+	static int hash(byte[] bytes, int from, int length) {
+		int hash = 1;
+		for (int i = from; i < from + length; i++) {
+			hash = 31 * hash + bytes[i];
+		}
+		hash *= 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+
+	private int appendText(String text) {
+		return text == null ? -1 : appendBytes(text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	// Length as an unsigned varint followed by the bytes
+	private int appendBytes(byte[] bytes) {
+		int required = poolSize + bytes.length + 5;
+		if (required > pool.length) {
+			pool = Arrays.copyOf(pool, Math.max(required, (int) Math.min(Integer.MAX_VALUE - 8, pool.length * 2L)));
+		}
+		int offset = poolSize;
+		int length = bytes.length;
+		while (length >= 0x80) {
+			pool[poolSize++] = (byte) (length | 0x80);
+			length >>>= 7;
+		}
+		pool[poolSize++] = (byte) length;
+		System.arraycopy(bytes, 0, pool, poolSize, bytes.length);
+		poolSize += bytes.length;
+		return offset;
+	}
+
+	private int readLength(int offset) {
+		int length = 0;
+		for (int shift = 0;; shift += 7) {
+			byte b = pool[offset++];
+			length |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return length;
+			}
+		}
+	}
+
+	static int lengthPrefixSize(int length) {
+		int bytes = 1;
+		while (length >= 0x80) {
+			length >>>= 7;
+			bytes++;
+		}
+		return bytes;
+	}
+
+	private boolean poolEquals(int offset, byte[] bytes) {
+		if (offset < 0) {
+			return false;
+		}
+		int length = readLength(offset);
+		return length == bytes.length
+				&& Arrays.equals(pool, offset + lengthPrefixSize(length), offset + lengthPrefixSize(length) + length,
+						bytes, 0, length);
+	}
+
+	private boolean poolEquals(int offset, String text) {
+		if (offset < 0 || text == null) {
+			return offset < 0 && text == null;
+		}
+		return poolEquals(offset, text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private String readText(int offset) {
+		if (offset < 0) {
+			return null;
+		}
+		int length = readLength(offset);
+		return new String(pool, offset + lengthPrefixSize(length), length, StandardCharsets.UTF_8);
+	}
+
+	private class RowView implements BookView {
+
+		private final int row;
+
+		RowView(int row) {
+			this.row = row;
+		}
+
+		@Override
+		public String getBookId() {
+			lock.readLock().lock();
+			try {
+				return readText(idOffsets[row]);
+			} finally {
+				lock.readLock().unlock();
+			}
+		}
+
+		@Override
+		public String getBookName() {
+			lock.readLock().lock();
+			try {
+				return readText(nameOffsets[row]);
+			} finally {
+				lock.readLock().unlock();
+			}
+		}
+
+		@Override
+		public String getAuthor() {
+			lock.readLock().lock();
+			try {
+				return authors.get(authorCodes[row]);
+			} finally {
+				lock.readLock().unlock();
+			}
+		}
+
+		@Override
+		public int getCopiesAvailable() {
+			lock.readLock().lock();
+			try {
+				return copiesAvailable[row];
+			} finally {
+				lock.readLock().unlock();
+			}
+		}
+
+		@Override
+		public int getTotalCopies() {
+			lock.readLock().lock();
+			try {
+				return totalCopies[row];
+			} finally {
+				lock.readLock().unlock();
+			}
+		}
+
+		@Override
+		public String toString() {
+			return toBook().toString();
+		}
+	}
+}
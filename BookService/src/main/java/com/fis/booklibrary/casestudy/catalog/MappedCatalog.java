@@ -0,0 +1,197 @@
+package com.fis.booklibrary.casestudy.catalog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.logging.Logger;
+
+/**
+ * Read-only catalog served straight from a memory-mapped snapshot file
+ * written by {@link CompactCatalog#writeSnapshot}. Nothing is copied onto
+ * the heap when opening it, lookups read the mapped index and columns, so
+ * a restarted instance can answer reads before the database is loaded.
+ *
+ * File layout, big-endian:
+ * header (44 bytes): magic, format version, sequence, written at, rows,
+ * authors, index slots, pool size, author pool size
+ * rows x 20 bytes: id offset, name offset, author code, available, total
+ * index slots x 4 bytes, authors x 4 byte offsets, text pool, author pool
+ */
+public class MappedCatalog {
+
+	private static final Logger logger = Logger.getLogger(MappedCatalog.class.getName());
+
+	static final int MAGIC = 0x424B4353;
+	static final int FORMAT_VERSION = 1;
+	private static final int HEADER_BYTES = 44;
+	private static final int ROW_BYTES = 20;
+
+	private final ByteBuffer buffer;
+	private final long sequence;
+	private final long writtenAt;
+	private final int rows;
+	private final int slotCount;
+	private final int slotsStart;
+	private final int authorsStart;
+	private final int poolStart;
+	private final int authorPoolStart;
+
+	private MappedCatalog(ByteBuffer buffer) {
+		this.buffer = buffer;
+		this.sequence = buffer.getLong(8);
+		this.writtenAt = buffer.getLong(16);
+		this.rows = buffer.getInt(24);
+		int authors = buffer.getInt(28);
+		this.slotCount = buffer.getInt(32);
+		int poolSize = buffer.getInt(36);
+		this.slotsStart = HEADER_BYTES + rows * ROW_BYTES;
+		this.authorsStart = slotsStart + slotCount * 4;
+		this.poolStart = authorsStart + authors * 4;
+		this.authorPoolStart = poolStart + poolSize;
+	}
+
+	/**
+	 * Map a snapshot file
+	 * @param file snapshot written by CompactCatalog
+	 * @return mapped catalog, empty if the file is missing, truncated or of another format version
+	 */
+	public static Optional<MappedCatalog> open(Path file) {
+		if (!Files.isRegularFile(file)) {
+			return Optional.empty();
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long length = channel.size();
+			if (length < HEADER_BYTES || length > Integer.MAX_VALUE) {
+				logger.warning("Ignoring catalog snapshot " + file + " of " + length + " bytes");
+				return Optional.empty();
+			}
+			// The mapping stays valid after the channel is closed
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+			if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+				logger.warning("Ignoring catalog snapshot " + file + " of an unknown format");
+				return Optional.empty();
+			}
+			long expected = (long) HEADER_BYTES + (long) buffer.getInt(24) * ROW_BYTES + 4L * buffer.getInt(32)
+					+ 4L * buffer.getInt(28) + buffer.getInt(36) + buffer.getInt(40);
+			if (expected != length) {
+				logger.warning("Ignoring truncated catalog snapshot " + file);
+				return Optional.empty();
+			}
+			return Optional.of(new MappedCatalog(buffer));
+		} catch (IOException e) {
+			logger.warning("Could not map catalog snapshot " + file + ": " + e.getMessage());
+			return Optional.empty();
+		}
+	}
+
+	public Optional<BookView> get(String bookId) {
+		byte[] id = bookId.getBytes(StandardCharsets.UTF_8);
+		int mask = slotCount - 1;
+		for (int slot = CompactCatalog.hash(id, 0, id.length) & mask;; slot = (slot + 1) & mask) {
+			int entry = buffer.getInt(slotsStart + slot * 4);
+			if (entry == 0) {
+				return Optional.empty();
+			}
+			int row = entry - 1;
+			if (textEquals(poolStart + column(row, 0), id)) {
+				return Optional.of(new RowView(row));
+			}
+		}
+	}
+
+	public int size() {
+		return rows;
+	}
+
+	public long getSequence() {
+		return sequence;
+	}
+
+	public long getWrittenAt() {
+		return writtenAt;
+	}
+
+	private int column(int row, int column) {
+		return buffer.getInt(HEADER_BYTES + row * ROW_BYTES + column * 4);
+	}
+
+	private int readLength(int position) {
+		int length = 0;
+		for (int shift = 0;; shift += 7) {
+			byte b = buffer.get(position++);
+			length |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return length;
+			}
+		}
+	}
+
+	private boolean textEquals(int position, byte[] text) {
+		int length = readLength(position);
+		if (length != text.length) {
+			return false;
+		}
+		int start = position + CompactCatalog.lengthPrefixSize(length);
+		for (int i = 0; i < length; i++) {
+			if (buffer.get(start + i) != text[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private String readText(int start, int offset) {
+		if (offset < 0) {
+			return null;
+		}
+		int length = readLength(start + offset);
+		byte[] text = new byte[length];
+		buffer.get(start + offset + CompactCatalog.lengthPrefixSize(length), text);
+		return new String(text, StandardCharsets.UTF_8);
+	}
+
+	private class RowView implements BookView {
+
+		private final int row;
+
+		RowView(int row) {
+			this.row = row;
+		}
+
+		@Override
+		public String getBookId() {
+			return readText(poolStart, column(row, 0));
+		}
+
+		@Override
+		public String getBookName() {
+			return readText(poolStart, column(row, 1));
+		}
+
+		@Override
+		public String getAuthor() {
+			return readText(authorPoolStart, buffer.getInt(authorsStart + column(row, 2) * 4));
+		}
+
+		@Override
+		public int getCopiesAvailable() {
+			return column(row, 3);
+		}
+
+		@Override
+		public int getTotalCopies() {
+			return column(row, 4);
+		}
+
+		@Override
+		public String toString() {
+			return toBook().toString();
+		}
+	}
+}
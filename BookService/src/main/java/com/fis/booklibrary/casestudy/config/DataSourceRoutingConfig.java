@@ -0,0 +1,65 @@
+package com.fis.booklibrary.casestudy.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import com.fis.booklibrary.casestudy.datasource.BookDataSourceProperties;
+import com.fis.booklibrary.casestudy.datasource.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Read-replica routing for the BOOK database.
+ * When booklibrary.datasource.routing.enabled is true, read-only transactions
+ * are served by the configured replicas and writes by the primary.
+ * With sharding enabled the replicas are configured per shard instead, see ShardingConfig.
+ * Otherwise Spring Boot's single auto-configured DataSource is used.
+ */
+@Configuration
+@EnableConfigurationProperties(BookDataSourceProperties.class)
+public class DataSourceRoutingConfig {
+
+	private static final Logger logger = Logger.getLogger(DataSourceRoutingConfig.class.getName());
+
+	@Bean
+	@Primary
+	@ConditionalOnExpression("${booklibrary.datasource.routing.enabled:false} and !${booklibrary.datasource.sharding.enabled:false}")
+	public DataSource routingDataSource(BookDataSourceProperties properties) {
+		boolean initializeSchema = properties.getRouting().isInitializeSchema();
+		DataSource primary = createNode(properties.getPrimary(), "book-primary", initializeSchema);
+		List<DataSource> replicas = new ArrayList<>();
+		for (int i = 0; i < properties.getReplicas().size(); i++) {
+			replicas.add(createNode(properties.getReplicas().get(i), "book-replica-" + i, initializeSchema));
+		}
+		logger.info("Read-replica routing enabled with " + replicas.size() + " replica(s)");
+		return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(primary, replicas));
+	}
+
+	static DataSource createNode(BookDataSourceProperties.Node node, String poolName, boolean initializeSchema) {
+		HikariDataSource dataSource = DataSourceBuilder.create()
+				.type(HikariDataSource.class)
+				.url(node.getUrl())
+				.username(node.getUsername())
+				.password(node.getPassword())
+				.build();
+		dataSource.setPoolName(poolName);
+		dataSource.setMaximumPoolSize(node.getMaximumPoolSize());
+		if (initializeSchema) {
+			DatabasePopulatorUtils.execute(new ResourceDatabasePopulator(new ClassPathResource("db/book-schema.sql")), dataSource);
+		}
+		return dataSource;
+	}
+}
@@ -0,0 +1,69 @@
+package com.fis.booklibrary.casestudy.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.fis.booklibrary.casestudy.datasource.BookDataSourceProperties;
+import com.fis.booklibrary.casestudy.datasource.ReplicaRoutingDataSource;
+import com.fis.booklibrary.casestudy.datasource.ShardRebalancer;
+import com.fis.booklibrary.casestudy.datasource.ShardRouter;
+import com.fis.booklibrary.casestudy.datasource.ShardRoutingDataSource;
+import com.fis.booklibrary.casestudy.datasource.ShardsEndpoint;
+
+/**
+ * Hash-sharding of the BOOK table by bookId across booklibrary.datasource.shards.
+ * Each shard may have its own replicas, used when read-replica routing is enabled.
+ */
+@Configuration
+@ConditionalOnProperty(name = "booklibrary.datasource.sharding.enabled", havingValue = "true")
+public class ShardingConfig {
+
+	private static final Logger logger = Logger.getLogger(ShardingConfig.class.getName());
+
+	@Bean
+	public ShardRoutingDataSource shardRoutingDataSource(BookDataSourceProperties properties) {
+		boolean initializeSchema = properties.getRouting().isInitializeSchema();
+		boolean replicaRouting = properties.getRouting().isEnabled();
+		List<DataSource> shards = new ArrayList<>();
+		for (int i = 0; i < properties.getShards().size(); i++) {
+			BookDataSourceProperties.Shard shard = properties.getShards().get(i);
+			DataSource primary = DataSourceRoutingConfig.createNode(shard, "book-shard-" + i, initializeSchema);
+			List<DataSource> replicas = new ArrayList<>();
+			if (replicaRouting) {
+				for (int j = 0; j < shard.getReplicas().size(); j++) {
+					replicas.add(DataSourceRoutingConfig.createNode(shard.getReplicas().get(j),
+							"book-shard-" + i + "-replica-" + j, initializeSchema));
+				}
+			}
+			shards.add(new ReplicaRoutingDataSource(primary, replicas));
+		}
+		logger.info("Sharding enabled with " + shards.size() + " shard(s)");
+		return new ShardRoutingDataSource(shards);
+	}
+
+	@Bean
+	@Primary
+	public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+		return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+	}
+
+	@Bean
+	public ShardRebalancer shardRebalancer(ShardRoutingDataSource shardRoutingDataSource, ShardRouter shardRouter,
+			BookDataSourceProperties properties) {
+		return new ShardRebalancer(shardRoutingDataSource, shardRouter, properties.getSharding().getRebalancePageSize());
+	}
+
+	@Bean
+	public ShardsEndpoint shardsEndpoint(ShardRebalancer shardRebalancer, ShardRouter shardRouter) {
+		return new ShardsEndpoint(shardRebalancer, shardRouter);
+	}
+}
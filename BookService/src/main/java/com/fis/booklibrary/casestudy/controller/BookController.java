@@ -4,6 +4,7 @@ import java.util.List;
 import java.util.NoSuchElementException;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -12,11 +13,16 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import com.fis.booklibrary.casestudy.feignclient.BookServiceFeignClient;
+import com.fis.booklibrary.casestudy.model.AvailabilitySummary;
 import com.fis.booklibrary.casestudy.model.Book;
+import com.fis.booklibrary.casestudy.service.BookAvailabilityService;
+import com.fis.booklibrary.casestudy.service.BookCatalogService;
 import com.fis.booklibrary.casestudy.service.BookService;
 
 /**
@@ -31,6 +37,15 @@ public class BookController implements BookServiceFeignClient {
 	@Autowired
 	private BookService bookService;
 	
+	@Autowired
+	private BookAvailabilityService bookAvailabilityService;
+	
+	@Autowired
+	private BookCatalogService bookCatalogService;
+	
+	@Value("${booklibrary.catalog.serve-reads:false}")
+	private boolean serveReadsFromCatalog;
+	
 	/**
 	 * GET: Retrieve all books
 	 * HTTP Method: GET (safe, idempotent)
@@ -44,10 +59,57 @@ public class BookController implements BookServiceFeignClient {
 		return ResponseEntity.ok(books);
 	}
 	
+	/**
+	 * GET: Retrieve the precomputed availability summary
+	 * HTTP Method: GET (safe, idempotent)
+	 * Status Code: 200 OK
+	 * Notes: Served from memory, counts per state and the low-stock titles
+	 * @return Availability summary
+	 */
+	@GetMapping("/availability")
+	public ResponseEntity<AvailabilitySummary> getAvailability() {
+		return ResponseEntity.ok(bookAvailabilityService.getSummary());
+	}
+	
+	/**
+	 * GET: Stream availability changes as server-sent events
+	 * HTTP Method: GET (safe)
+	 * Status Code: 200 OK
+	 * Notes: One "availability" event per book whose copies changed
+	 * @return Event stream
+	 */
+	@GetMapping(value = "/availability/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public SseEmitter streamAvailability() {
+		return bookAvailabilityService.subscribe();
+	}
+	
+	/**
+	 * GET: Retrieve one page of books ordered by bookId
+	 * HTTP Method: GET (safe, idempotent)
+	 * Status Codes: 200 OK, 400 BAD REQUEST
+	 * Notes: Keyset paging for jobs walking the whole catalog, such as inventory reconciliation
+	 * @param after bookId the page starts after, omitted for the first page
+	 * @param limit page size between 1 and 1000
+	 * @return Books ordered by bookId
+	 */
+	@GetMapping("/inventory")
+	public ResponseEntity<List<Book>> getInventory(
+			@RequestParam(name = "after", defaultValue = "") String after,
+			@RequestParam(name = "limit", defaultValue = "500") int limit) {
+		if (limit < 1 || limit > 1000) {
+			throw new ResponseStatusException(
+				HttpStatus.BAD_REQUEST,
+				"Invalid request: limit must be between 1 and 1000"
+			);
+		}
+		return ResponseEntity.ok(bookService.getBooksAfter(after, limit));
+	}
+	
 	/**
 	 * GET: Retrieve a specific book by ID
 	 * HTTP Method: GET (safe, idempotent)
 	 * Status Codes: 200 OK, 404 NOT FOUND
+	 * Notes: Served from the in-memory catalog when booklibrary.catalog.serve-reads is set
 	 * @param bookId unique book identifier
 	 * @return Book details or 404 error
 	 */
@@ -55,7 +117,7 @@ public class BookController implements BookServiceFeignClient {
 	@GetMapping("/{bookId}")
 	public ResponseEntity<Book> getBook(@PathVariable("bookId") String bookId) {
 		try {
-			Book book = bookService.getBook(bookId)
+			Book book = (serveReadsFromCatalog ? bookCatalogService.getBook(bookId) : bookService.getBook(bookId))
 				.orElseThrow(() -> new ResponseStatusException(
 					HttpStatus.NOT_FOUND, 
 					"Book not found with ID: " + bookId
@@ -103,4 +165,43 @@ public class BookController implements BookServiceFeignClient {
 			);
 		}
 	}
+	
+	/**
+	 * PUT: Update book's available copies if they still have the expected value
+	 * HTTP Method: PUT (idempotent, safe for multiple calls)
+	 * Status Codes: 200 OK, 400 BAD REQUEST, 404 NOT FOUND, 409 CONFLICT
+	 * Notes: Used by inventory reconciliation, a checkout since its read wins
+	 * @param bookId unique book identifier
+	 * @param expectedAvailable available copies the caller read
+	 * @param remainingCopies number of copies available (must be >= 0)
+	 * @return Updated book details or error
+	 */
+	@PutMapping(value = "/{bookId}", params = "expectedAvailable")
+	public ResponseEntity<Book> compareAndSetBook(
+			@PathVariable("bookId") String bookId,
+			@RequestParam("expectedAvailable") int expectedAvailable,
+			@RequestBody Integer remainingCopies) {
+		
+		if (remainingCopies == null || remainingCopies < 0) {
+			throw new ResponseStatusException(
+				HttpStatus.BAD_REQUEST,
+				"Invalid request: remainingCopies must be a non-negative integer"
+			);
+		}
+		
+		try {
+			Book updatedBook = bookService.compareAndSetCopiesAvailable(bookId, expectedAvailable, remainingCopies)
+				.orElseThrow(() -> new ResponseStatusException(
+					HttpStatus.CONFLICT,
+					"Available copies of " + bookId + " are no longer " + expectedAvailable
+				));
+			return ResponseEntity.ok(updatedBook);
+		} catch (IllegalArgumentException e) {
+			throw new ResponseStatusException(
+				HttpStatus.NOT_FOUND,
+				"Book not found with ID: " + bookId,
+				e
+			);
+		}
+	}
 }
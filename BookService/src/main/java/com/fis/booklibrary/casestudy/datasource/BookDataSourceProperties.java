@@ -0,0 +1,80 @@
+package com.fis.booklibrary.casestudy.datasource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Connection settings for the BOOK database nodes used when
+ * read-replica routing or sharding is enabled (booklibrary.datasource.*).
+ */
+@ConfigurationProperties(prefix = "booklibrary.datasource")
+@Getter
+@Setter
+public class BookDataSourceProperties {
+
+	private Routing routing = new Routing();
+
+	private Node primary = new Node();
+
+	private List<Node> replicas = new ArrayList<>();
+
+	private Sharding sharding = new Sharding();
+
+	private List<Shard> shards = new ArrayList<>();
+
+	@Getter
+	@Setter
+	public static class Routing {
+
+		/** Route read-only transactions to the replica pool */
+		private boolean enabled = false;
+
+		/** How long reads of a just-written book stay on the primary (replication lag budget) */
+		private long readYourWritesWindowMs = 2000;
+
+		/** Create the BOOK table on every node, for local embedded databases */
+		private boolean initializeSchema = false;
+	}
+
+	@Getter
+	@Setter
+	public static class Sharding {
+
+		/** Hash-partition BOOK rows by bookId across the configured shards */
+		private boolean enabled = false;
+
+		/** Upper bound for a scatter-gather read across all shards */
+		private long scatterGatherTimeoutMs = 5000;
+
+		/** Rows read per page while rebalancing a shard */
+		private int rebalancePageSize = 500;
+	}
+
+	@Getter
+	@Setter
+	public static class Node {
+
+		private String url;
+
+		private String username = "sa";
+
+		private String password = "";
+
+		private int maximumPoolSize = 10;
+	}
+
+	/**
+	 * A shard primary with its own (optional) replicas
+	 */
+	@Getter
+	@Setter
+	public static class Shard extends Node {
+
+		private List<Node> replicas = new ArrayList<>();
+	}
+}
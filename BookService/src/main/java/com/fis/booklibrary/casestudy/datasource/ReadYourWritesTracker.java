@@ -0,0 +1,54 @@
+package com.fis.booklibrary.casestudy.datasource;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Remembers which books were written recently so that reads of them
+ * can be sent to the primary until replicas are expected to have caught up.
+ */
+@Component
+public class ReadYourWritesTracker {
+
+	@Autowired
+	private BookDataSourceProperties properties;
+
+	private final Map<String, Long> lastWrites = new ConcurrentHashMap<>();
+
+	public void recordWrite(String bookId) {
+		long now = System.currentTimeMillis();
+		lastWrites.put(bookId, now);
+		if (lastWrites.size() > 1024) {
+			evictExpired(now);
+		}
+	}
+
+	public boolean isRecentlyWritten(String bookId) {
+		Long writtenAt = lastWrites.get(bookId);
+		return writtenAt != null && withinWindow(writtenAt, System.currentTimeMillis());
+	}
+
+	/**
+	 * @return bookIds written within the window, the only ones a replica may hold stale
+	 */
+	public Set<String> getRecentlyWritten() {
+		long now = System.currentTimeMillis();
+		return lastWrites.entrySet().stream()
+				.filter(write -> withinWindow(write.getValue(), now))
+				.map(Map.Entry::getKey)
+				.collect(Collectors.toSet());
+	}
+
+	private boolean withinWindow(long writtenAt, long now) {
+		return now - writtenAt < properties.getRouting().getReadYourWritesWindowMs();
+	}
+
+	private void evictExpired(long now) {
+		lastWrites.values().removeIf(writtenAt -> !withinWindow(writtenAt, now));
+	}
+}
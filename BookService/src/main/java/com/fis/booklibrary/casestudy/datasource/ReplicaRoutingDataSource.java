@@ -0,0 +1,52 @@
+package com.fis.booklibrary.casestudy.datasource;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Routes connections of read-only transactions to a pool of replicas
+ * (round robin) and everything else to the primary.
+ * Must be wrapped in a LazyConnectionDataSourceProxy so that the lookup
+ * happens after the transaction's read-only flag has been bound.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+	static final String PRIMARY = "primary";
+	static final String REPLICA_PREFIX = "replica-";
+
+	private final List<String> replicaKeys = new ArrayList<>();
+	private final AtomicInteger nextReplica = new AtomicInteger();
+
+	public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas) {
+		Map<Object, Object> targets = new HashMap<>();
+		targets.put(PRIMARY, primary);
+		for (int i = 0; i < replicas.size(); i++) {
+			String key = REPLICA_PREFIX + i;
+			targets.put(key, replicas.get(i));
+			replicaKeys.add(key);
+		}
+		setTargetDataSources(targets);
+		setDefaultTargetDataSource(primary);
+		afterPropertiesSet();
+	}
+
+	@Override
+	protected Object determineCurrentLookupKey() {
+		if (replicaKeys.isEmpty()
+				|| RoutingContext.isPrimaryForced()
+				|| !TransactionSynchronizationManager.isActualTransactionActive()
+				|| !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+			return PRIMARY;
+		}
+		int index = Math.floorMod(nextReplica.getAndIncrement(), replicaKeys.size());
+		return replicaKeys.get(index);
+	}
+}
@@ -0,0 +1,65 @@
+package com.fis.booklibrary.casestudy.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * Thread-bound routing hints consulted by {@link ShardRoutingDataSource}
+ * and {@link ReplicaRoutingDataSource}.
+ * Selects the shard a unit of work runs against and lets a read-only
+ * transaction be pinned to the primary when a replica may not have
+ * caught up with a recent write yet.
+ */
+public final class RoutingContext {
+
+	private static final ThreadLocal<Boolean> PRIMARY_FORCED = ThreadLocal.withInitial(() -> Boolean.FALSE);
+	private static final ThreadLocal<Integer> CURRENT_SHARD = new ThreadLocal<>();
+
+	private RoutingContext() {
+	}
+
+	public static boolean isPrimaryForced() {
+		return PRIMARY_FORCED.get();
+	}
+
+	/**
+	 * @return shard selected for the current thread, or null for the default shard
+	 */
+	public static Integer currentShard() {
+		return CURRENT_SHARD.get();
+	}
+
+	/**
+	 * Run the given work with every connection taken from the primary
+	 * @param work work to execute
+	 * @return result of the work
+	 */
+	public static <T> T onPrimary(Supplier<T> work) {
+		boolean previous = PRIMARY_FORCED.get();
+		PRIMARY_FORCED.set(Boolean.TRUE);
+		try {
+			return work.get();
+		} finally {
+			PRIMARY_FORCED.set(previous);
+		}
+	}
+
+	/**
+	 * Run the given work with every connection taken from the given shard
+	 * @param shard shard index
+	 * @param work work to execute
+	 * @return result of the work
+	 */
+	public static <T> T onShard(int shard, Supplier<T> work) {
+		Integer previous = CURRENT_SHARD.get();
+		CURRENT_SHARD.set(shard);
+		try {
+			return work.get();
+		} finally {
+			if (previous == null) {
+				CURRENT_SHARD.remove();
+			} else {
+				CURRENT_SHARD.set(previous);
+			}
+		}
+	}
+}
@@ -0,0 +1,159 @@
+package com.fis.booklibrary.casestudy.datasource;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fis.booklibrary.casestudy.model.Book;
+
+/**
+ * Moves BOOK rows to the shard that owns them under the current shard count.
+ * Run it after a shard has been added to booklibrary.datasource.shards:
+ * every shard is scanned page by page (keyset on BOOK_ID) and each misplaced
+ * row is moved on its own: it is locked on the source, copied to its owner
+ * and deleted from the source in the same source transaction, so a
+ * concurrent update of the source row waits for the move instead of being
+ * lost. A row already on its owner (an interrupted move) is the one routed
+ * writes went to and is kept, so the rebalance can simply be re-run.
+ * While it runs, lookups that miss on the owner move the row first through
+ * {@link #moveToOwner}.
+ */
+public class ShardRebalancer {
+
+	private static final Logger logger = Logger.getLogger(ShardRebalancer.class.getName());
+
+	private static final String SELECT_PAGE = "SELECT BOOK_ID FROM BOOK "
+			+ "WHERE BOOK_ID > ? ORDER BY BOOK_ID FETCH FIRST ? ROWS ONLY";
+	private static final String SELECT_ROW = "SELECT BOOK_ID, BOOK_NAME, AUTHOR, AVAILABLE_COPIES, TOTAL_COPIES FROM BOOK "
+			+ "WHERE BOOK_ID = ?";
+	private static final String LOCK_ROW = SELECT_ROW + " FOR UPDATE";
+	private static final String INSERT_ROW = "INSERT INTO BOOK (BOOK_ID, BOOK_NAME, AUTHOR, AVAILABLE_COPIES, TOTAL_COPIES) "
+			+ "VALUES (?, ?, ?, ?, ?)";
+	private static final String DELETE_ROW = "DELETE FROM BOOK WHERE BOOK_ID = ?";
+	private static final String COUNT_ROW = "SELECT COUNT(*) FROM BOOK WHERE BOOK_ID = ?";
+
+	private static final RowMapper<Object[]> ROW = (rs, rowNum) -> new Object[] {
+			rs.getString(1), rs.getString(2), rs.getString(3), rs.getInt(4), rs.getInt(5) };
+	private static final RowMapper<Book> BOOK = (rs, rowNum) ->
+			new Book(rs.getString(1), rs.getString(2), rs.getString(3), rs.getInt(4), rs.getInt(5));
+
+	private final ShardRoutingDataSource shards;
+	private final ShardRouter shardRouter;
+	private final int pageSize;
+	private final List<TransactionTemplate> transactions = new ArrayList<>();
+	private final AtomicBoolean running = new AtomicBoolean();
+
+	public ShardRebalancer(ShardRoutingDataSource shards, ShardRouter shardRouter, int pageSize) {
+		this.shards = shards;
+		this.shardRouter = shardRouter;
+		this.pageSize = pageSize;
+		for (int shard = 0; shard < shards.getShardCount(); shard++) {
+			transactions.add(new TransactionTemplate(new DataSourceTransactionManager(shards.getShard(shard))));
+		}
+	}
+
+	public boolean isRunning() {
+		return running.get();
+	}
+
+	/**
+	 * @return number of BOOK rows stored on each shard
+	 */
+	public Map<Integer, Long> rowCounts() {
+		Map<Integer, Long> counts = new LinkedHashMap<>();
+		for (int shard = 0; shard < shards.getShardCount(); shard++) {
+			counts.put(shard, jdbc(shard).queryForObject("SELECT COUNT(*) FROM BOOK", Long.class));
+		}
+		return counts;
+	}
+
+	/**
+	 * Move every misplaced row to its owning shard
+	 * @return number of rows moved away from each shard
+	 */
+	public Map<Integer, Integer> rebalance() {
+		if (!running.compareAndSet(false, true)) {
+			throw new IllegalStateException("A shard rebalance is already running");
+		}
+		try {
+			Map<Integer, Integer> moved = new LinkedHashMap<>();
+			for (int shard = 0; shard < shards.getShardCount(); shard++) {
+				moved.put(shard, rebalanceShard(shard));
+			}
+			logger.info("Shard rebalance finished, rows moved per shard: " + moved);
+			return moved;
+		} finally {
+			running.set(false);
+		}
+	}
+
+	/**
+	 * Move one book to its owning shard now, wherever it is stored
+	 * @param bookId unique book identifier
+	 * @return the book as stored on its owning shard, empty if no shard has it
+	 */
+	public Optional<Book> moveToOwner(String bookId) {
+		int owner = shardRouter.shardFor(bookId);
+		for (int shard = 0; shard < shards.getShardCount(); shard++) {
+			if (shard != owner) {
+				move(shard, owner, bookId);
+			}
+		}
+		// Read after the moves, the rebalance may have moved it meanwhile
+		return RoutingContext.onPrimary(() -> jdbc(owner).query(SELECT_ROW, BOOK, bookId).stream().findFirst());
+	}
+
+	private int rebalanceShard(int source) {
+		JdbcTemplate sourceJdbc = jdbc(source);
+		int moved = 0;
+		String lastBookId = "";
+		while (true) {
+			List<String> page = sourceJdbc.queryForList(SELECT_PAGE, String.class, lastBookId, pageSize);
+			if (page.isEmpty()) {
+				return moved;
+			}
+			for (String bookId : page) {
+				int owner = shardRouter.shardFor(bookId);
+				if (owner != source && move(source, owner, bookId)) {
+					moved++;
+				}
+			}
+			lastBookId = page.get(page.size() - 1);
+		}
+	}
+
+	/**
+	 * Copy a row to its owner and delete it from the source while it is
+	 * locked on the source
+	 * @return false if the source no longer has the row
+	 */
+	private boolean move(int source, int owner, String bookId) {
+		// The caller may be in a read-only transaction, which would pick a replica
+		return RoutingContext.onPrimary(() -> transactions.get(source).execute(status -> {
+			JdbcTemplate sourceJdbc = jdbc(source);
+			List<Object[]> rows = sourceJdbc.query(LOCK_ROW, ROW, bookId);
+			if (rows.isEmpty()) {
+				return false;
+			}
+			JdbcTemplate target = jdbc(owner);
+			if (target.queryForObject(COUNT_ROW, Integer.class, bookId) == 0) {
+				target.update(INSERT_ROW, rows.get(0));
+			}
+			sourceJdbc.update(DELETE_ROW, bookId);
+			return true;
+		}));
+	}
+
+	private JdbcTemplate jdbc(int shard) {
+		return new JdbcTemplate(shards.getShard(shard));
+	}
+}
@@ -0,0 +1,109 @@
+package com.fis.booklibrary.casestudy.datasource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Maps a bookId to the shard owning it and fans reads out to all shards.
+ * With sharding disabled there is a single shard and no extra threads are used.
+ */
+@Component
+public class ShardRouter {
+
+	private final int shardCount;
+	private final long scatterGatherTimeoutMs;
+	private final ExecutorService executor;
+
+	public ShardRouter(BookDataSourceProperties properties) {
+		boolean shardingEnabled = properties.getSharding().isEnabled();
+		this.shardCount = shardingEnabled ? Math.max(1, properties.getShards().size()) : 1;
+		this.scatterGatherTimeoutMs = properties.getSharding().getScatterGatherTimeoutMs();
+		this.executor = shardCount > 1 ? Executors.newFixedThreadPool(shardCount, new ShardThreadFactory()) : null;
+	}
+
+	public int getShardCount() {
+		return shardCount;
+	}
+
+	/**
+	 * Hash a bookId onto a shard. String.hashCode is specified by the JLS,
+	 * so the placement is stable across JVMs and restarts.
+	 * @param bookId unique book identifier
+	 * @return index of the owning shard
+	 */
+	public int shardFor(String bookId) {
+		return Math.floorMod(bookId.hashCode(), shardCount);
+	}
+
+	/**
+	 * Run the given work on the shard owning the book
+	 * @param bookId unique book identifier
+	 * @param work work to execute
+	 * @return result of the work
+	 */
+	public <T> T onOwningShard(String bookId, Supplier<T> work) {
+		return RoutingContext.onShard(shardFor(bookId), work);
+	}
+
+	/**
+	 * Run the given work on every shard in parallel and concatenate the results
+	 * @param work per-shard work, executed once with each shard selected
+	 * @return results of all shards in shard order
+	 */
+	public <T> List<T> scatterGather(Supplier<List<T>> work) {
+		if (executor == null) {
+			return RoutingContext.onShard(0, work);
+		}
+		List<CompletableFuture<List<T>>> futures = new ArrayList<>(shardCount);
+		for (int i = 0; i < shardCount; i++) {
+			int shard = i;
+			futures.add(CompletableFuture.supplyAsync(() -> RoutingContext.onShard(shard, work), executor));
+		}
+		List<T> results = new ArrayList<>();
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(scatterGatherTimeoutMs);
+		try {
+			for (CompletableFuture<List<T>> future : futures) {
+				results.addAll(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while reading from shards", e);
+		} catch (ExecutionException | TimeoutException e) {
+			futures.forEach(future -> future.cancel(true));
+			throw new IllegalStateException("Failed to read from all shards", e);
+		}
+		return results;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+	private static class ShardThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "book-shard-reader-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
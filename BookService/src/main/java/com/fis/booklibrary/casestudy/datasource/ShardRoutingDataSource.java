@@ -0,0 +1,53 @@
+package com.fis.booklibrary.casestudy.datasource;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Routes connections to the shard selected through {@link RoutingContext#onShard}.
+ * Work without a selected shard (schema management, health checks) runs on shard 0.
+ * Must be wrapped in a LazyConnectionDataSourceProxy so that the lookup
+ * happens after the shard has been selected inside a transaction.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+	private final List<DataSource> shards;
+
+	public ShardRoutingDataSource(List<DataSource> shards) {
+		if (shards.isEmpty()) {
+			throw new IllegalArgumentException("At least one shard must be configured");
+		}
+		this.shards = new ArrayList<>(shards);
+		Map<Object, Object> targets = new HashMap<>();
+		for (int i = 0; i < shards.size(); i++) {
+			targets.put(i, shards.get(i));
+		}
+		setTargetDataSources(targets);
+		setDefaultTargetDataSource(shards.get(0));
+		setLenientFallback(false);
+		afterPropertiesSet();
+	}
+
+	public int getShardCount() {
+		return shards.size();
+	}
+
+	/**
+	 * @param shard shard index
+	 * @return DataSource of the shard, bypassing thread-bound routing
+	 */
+	public DataSource getShard(int shard) {
+		return shards.get(shard);
+	}
+
+	@Override
+	protected Object determineCurrentLookupKey() {
+		return RoutingContext.currentShard();
+	}
+}
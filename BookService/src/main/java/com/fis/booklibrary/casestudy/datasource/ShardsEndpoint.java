@@ -0,0 +1,41 @@
+package com.fis.booklibrary.casestudy.datasource;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+
+/**
+ * Actuator endpoint for operating the sharded BOOK table.
+ * GET /actuator/shards reports row counts, POST /actuator/shards rebalances
+ * rows after a shard has been added.
+ */
+@Endpoint(id = "shards")
+public class ShardsEndpoint {
+
+	private final ShardRebalancer rebalancer;
+	private final ShardRouter shardRouter;
+
+	public ShardsEndpoint(ShardRebalancer rebalancer, ShardRouter shardRouter) {
+		this.rebalancer = rebalancer;
+		this.shardRouter = shardRouter;
+	}
+
+	@ReadOperation
+	public Map<String, Object> shards() {
+		Map<String, Object> shards = new LinkedHashMap<>();
+		shards.put("shardCount", shardRouter.getShardCount());
+		shards.put("rowCounts", rebalancer.rowCounts());
+		return shards;
+	}
+
+	@WriteOperation
+	public Map<String, Object> rebalance() {
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("rowsMoved", rebalancer.rebalance());
+		result.put("rowCounts", rebalancer.rowCounts());
+		return result;
+	}
+}
@@ -0,0 +1,17 @@
+package com.fis.booklibrary.casestudy.model;
+
+/**
+ * Availability bucket of a book, based on its available copies
+ */
+public enum AvailabilityState {
+	UNAVAILABLE,
+	LOW_STOCK,
+	AVAILABLE;
+
+	public static AvailabilityState of(int copiesAvailable, int lowStockThreshold) {
+		if (copiesAvailable <= 0) {
+			return UNAVAILABLE;
+		}
+		return copiesAvailable <= lowStockThreshold ? LOW_STOCK : AVAILABLE;
+	}
+}
@@ -0,0 +1,26 @@
+package com.fis.booklibrary.casestudy.model;
+
+import java.util.List;
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Precomputed catalog availability: number of titles per state and the
+ * titles closest to running out, fewest copies first
+ */
+@Getter
+@AllArgsConstructor
+public class AvailabilitySummary {
+
+	private final int totalTitles;
+
+	private final Map<AvailabilityState, Integer> countsByState;
+
+	private final int lowStockThreshold;
+
+	private final List<BookAvailability> lowStock;
+
+	private final long updatedAt;
+}
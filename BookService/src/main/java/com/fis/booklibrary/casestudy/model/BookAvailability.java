@@ -0,0 +1,22 @@
+package com.fis.booklibrary.casestudy.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Immutable availability view of a single book
+ */
+@Getter
+@AllArgsConstructor
+public class BookAvailability {
+
+	private final String bookId;
+
+	private final String bookName;
+
+	private final int copiesAvailable;
+
+	private final int totalCopies;
+
+	private final AvailabilityState state;
+}
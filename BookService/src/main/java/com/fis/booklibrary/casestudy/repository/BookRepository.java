@@ -1,9 +1,25 @@
 package com.fis.booklibrary.casestudy.repository;
 
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.fis.booklibrary.casestudy.model.Book;
 
 public interface BookRepository extends JpaRepository<Book, String> {
 
+	List<Book> findByBookIdGreaterThanOrderByBookIdAsc(String bookId, Pageable pageable);
+
+	/**
+	 * Set the available copies only if they still have the expected value
+	 * @return 1 if updated, 0 if the book is missing or its copies changed
+	 */
+	@Modifying(clearAutomatically = true)
+	@Query("UPDATE Book b SET b.copiesAvailable = :copies WHERE b.bookId = :bookId AND b.copiesAvailable = :expected")
+	int compareAndSetCopiesAvailable(@Param("bookId") String bookId, @Param("expected") int expected,
+			@Param("copies") int copies);
 }
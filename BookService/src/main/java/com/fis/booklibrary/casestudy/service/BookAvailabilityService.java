@@ -0,0 +1,241 @@
+package com.fis.booklibrary.casestudy.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fis.booklibrary.casestudy.model.AvailabilityState;
+import com.fis.booklibrary.casestudy.model.AvailabilitySummary;
+import com.fis.booklibrary.casestudy.model.Book;
+import com.fis.booklibrary.casestudy.model.BookAvailability;
+
+/**
+ * Keeps an in-memory availability summary of the catalog up to date.
+ * The summary is loaded once at startup, updated incrementally on every
+ * copy change and re-synchronized periodically to pick up writes made by
+ * other BookService instances. Changes are pushed to server-sent-event
+ * subscribers so dashboards do not have to poll GET /books.
+ * A change applied while a re-synchronization reads the catalog is numbered
+ * and applied again over what was read, since the read may predate it.
+ */
+@Lazy(false)
+@Service
+public class BookAvailabilityService {
+
+	private static final Logger logger = Logger.getLogger(BookAvailabilityService.class.getName());
+
+	private static final Comparator<BookAvailability> FEWEST_COPIES_FIRST = Comparator
+			.comparingInt(BookAvailability::getCopiesAvailable)
+			.thenComparing(BookAvailability::getBookId);
+
+	@Autowired
+	private BookService bookService;
+
+	@Value("${booklibrary.availability.low-stock-threshold:2}")
+	private int lowStockThreshold;
+
+	@Value("${booklibrary.availability.low-stock-limit:100}")
+	private int lowStockLimit;
+
+	@Value("${booklibrary.availability.stream-timeout-ms:0}")
+	private long streamTimeoutMs;
+
+	private Map<String, BookAvailability> books = new HashMap<>();
+	private final Map<AvailabilityState, Integer> counts = new EnumMap<>(AvailabilityState.class);
+	private final TreeSet<BookAvailability> lowStock = new TreeSet<>(FEWEST_COPIES_FIRST);
+
+	private volatile AvailabilitySummary summary;
+
+	private long changeSequence;
+	private int refreshesInProgress;
+	private final Map<String, Change> changedDuringRefresh = new HashMap<>();
+
+	private final List<SseEmitter> subscribers = new CopyOnWriteArrayList<>();
+	private final ExecutorService publisher = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "availability-stream");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * @return precomputed summary, served without touching the database
+	 */
+	public AvailabilitySummary getSummary() {
+		AvailabilitySummary current = summary;
+		return current != null ? current : refresh();
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void onApplicationReady() {
+		refresh();
+	}
+
+	@Scheduled(fixedDelayString = "${booklibrary.availability.refresh-interval-ms:60000}",
+			initialDelayString = "${booklibrary.availability.refresh-interval-ms:60000}")
+	public void resynchronize() {
+		refresh();
+	}
+
+	/**
+	 * Rebuild the summary from the full catalog
+	 * @return rebuilt summary
+	 */
+	public AvailabilitySummary refresh() {
+		long startedAt = beginRefresh();
+		List<BookAvailability> changed = new ArrayList<>();
+		AvailabilitySummary rebuilt;
+		try {
+			List<Book> catalog = bookService.getBooks();
+			synchronized (this) {
+				Map<String, BookAvailability> previous = books;
+				books = new HashMap<>(previous.size());
+				counts.clear();
+				lowStock.clear();
+				for (Book book : catalog) {
+					apply(toAvailability(book));
+				}
+				for (Change change : changedDuringRefresh.values()) {
+					if (change.sequence() > startedAt) {
+						apply(change.availability());
+					}
+				}
+				// Written by other instances since the last refresh
+				for (BookAvailability current : books.values()) {
+					BookAvailability before = previous.get(current.getBookId());
+					if (before != null && before.getCopiesAvailable() != current.getCopiesAvailable()) {
+						changed.add(current);
+					}
+				}
+				rebuilt = snapshot();
+				summary = rebuilt;
+				logger.fine("Availability summary rebuilt for " + books.size() + " titles");
+			}
+		} finally {
+			endRefresh();
+		}
+		changed.forEach(this::publish);
+		return rebuilt;
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onBookCopiesChanged(BookCopiesChangedEvent event) {
+		BookAvailability current = toAvailability(event.getBook());
+		BookAvailability previous;
+		synchronized (this) {
+			changeSequence++;
+			if (refreshesInProgress > 0) {
+				changedDuringRefresh.put(current.getBookId(), new Change(changeSequence, current));
+			}
+			previous = apply(current);
+			summary = snapshot();
+		}
+		if (previous == null || previous.getCopiesAvailable() != current.getCopiesAvailable()) {
+			publish(current);
+		}
+	}
+
+	/**
+	 * Subscribe to availability changes as server-sent events named "availability"
+	 * @return emitter receiving one event per changed book
+	 */
+	public SseEmitter subscribe() {
+		SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+		emitter.onCompletion(() -> subscribers.remove(emitter));
+		emitter.onTimeout(() -> subscribers.remove(emitter));
+		emitter.onError(error -> subscribers.remove(emitter));
+		subscribers.add(emitter);
+		return emitter;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		publisher.shutdownNow();
+		subscribers.forEach(SseEmitter::complete);
+	}
+
+	/**
+	 * @return sequence of the last change before the catalog read, later ones are applied again
+	 */
+	private synchronized long beginRefresh() {
+		refreshesInProgress++;
+		return changeSequence;
+	}
+
+	private synchronized void endRefresh() {
+		if (--refreshesInProgress == 0) {
+			changedDuringRefresh.clear();
+		}
+	}
+
+	private BookAvailability apply(BookAvailability current) {
+		BookAvailability previous = books.put(current.getBookId(), current);
+		if (previous != null) {
+			counts.merge(previous.getState(), -1, Integer::sum);
+			lowStock.remove(previous);
+		}
+		counts.merge(current.getState(), 1, Integer::sum);
+		if (current.getState() != AvailabilityState.AVAILABLE) {
+			lowStock.add(current);
+		}
+		return previous;
+	}
+
+	private AvailabilitySummary snapshot() {
+		Map<AvailabilityState, Integer> countsByState = new EnumMap<>(AvailabilityState.class);
+		for (AvailabilityState state : AvailabilityState.values()) {
+			countsByState.put(state, counts.getOrDefault(state, 0));
+		}
+		List<BookAvailability> lowest = new ArrayList<>(Math.min(lowStock.size(), lowStockLimit));
+		Iterator<BookAvailability> iterator = lowStock.iterator();
+		while (iterator.hasNext() && lowest.size() < lowStockLimit) {
+			lowest.add(iterator.next());
+		}
+		return new AvailabilitySummary(books.size(), countsByState, lowStockThreshold, List.copyOf(lowest),
+				System.currentTimeMillis());
+	}
+
+	private BookAvailability toAvailability(Book book) {
+		return new BookAvailability(book.getBookId(), book.getBookName(), book.getCopiesAvailable(),
+				book.getTotalCopies(), AvailabilityState.of(book.getCopiesAvailable(), lowStockThreshold));
+	}
+
+	private void publish(BookAvailability change) {
+		if (subscribers.isEmpty()) {
+			return;
+		}
+		publisher.execute(() -> {
+			for (SseEmitter emitter : subscribers) {
+				try {
+					emitter.send(SseEmitter.event().name("availability").data(change));
+				} catch (IOException | IllegalStateException e) {
+					subscribers.remove(emitter);
+				}
+			}
+		});
+	}
+
+	private record Change(long sequence, BookAvailability availability) {
+	}
+}
@@ -0,0 +1,225 @@
+package com.fis.booklibrary.casestudy.service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.fis.booklibrary.casestudy.catalog.BookView;
+import com.fis.booklibrary.casestudy.catalog.CompactCatalog;
+import com.fis.booklibrary.casestudy.catalog.MappedCatalog;
+import com.fis.booklibrary.casestudy.model.Book;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Keeps the whole catalog in a {@link CompactCatalog}.
+ * Loaded in bookId pages so the full BOOK table is never held as entities
+ * at once, then kept current from BookCopiesChangedEvent. A row changed
+ * while the load runs keeps the value of the event, not the older one of
+ * its page. The catalog only sees changes made through this instance, so a
+ * title missing from it is still looked up in the database.
+ * The catalog is periodically written to a versioned snapshot file. On
+ * restart that snapshot is mapped read-only and answers lookups while the
+ * load catches up in the background, so the instance is ready straight away.
+ * Nothing is loaded, kept or written unless booklibrary.catalog.serve-reads is set.
+ */
+@Service
+@Lazy(false)
+public class BookCatalogService {
+
+	private static final Logger logger = Logger.getLogger(BookCatalogService.class.getName());
+
+	@Autowired
+	private BookService bookService;
+
+	@Value("${booklibrary.catalog.serve-reads:false}")
+	private boolean serveReads;
+
+	@Value("${booklibrary.catalog.load-page-size:1000}")
+	private int loadPageSize;
+
+	@Value("${booklibrary.catalog.snapshot.enabled:true}")
+	private boolean snapshotEnabled;
+
+	@Value("${booklibrary.catalog.snapshot.path:${java.io.tmpdir}/booklibrary/catalog-${server.port:8081}.snapshot}")
+	private Path snapshotPath;
+
+	private final CompactCatalog catalog = new CompactCatalog();
+
+	// Mapped snapshot of the previous run, dropped once the load has caught up
+	private volatile MappedCatalog warmSnapshot;
+	private volatile boolean caughtUp;
+
+	// Titles changed by an event while the load runs, their page value is older
+	private final Set<String> changedDuringLoad = new HashSet<>();
+	private final Object loadLock = new Object();
+
+	private long snapshotSequence;
+	private long snapshotVersion = -1;
+
+	private final ExecutorService loader = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "catalog-loader");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	@PostConstruct
+	public void mapSnapshot() {
+		if (serveReads && snapshotEnabled) {
+			MappedCatalog.open(snapshotPath).ifPresent(snapshot -> {
+				warmSnapshot = snapshot;
+				snapshotSequence = snapshot.getSequence();
+				logger.info("Serving " + snapshot.size() + " titles from catalog snapshot " + snapshot.getSequence()
+						+ " until the catalog is loaded");
+			});
+		}
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void startLoad() {
+		if (!serveReads) {
+			return;
+		}
+		loader.execute(() -> {
+			try {
+				load();
+			} catch (RuntimeException e) {
+				logger.severe("Catalog load failed: " + e.getMessage());
+			}
+		});
+	}
+
+	/**
+	 * Load every title from the database, replacing the values read from a snapshot
+	 */
+	public void load() {
+		String after = "";
+		List<Book> page;
+		do {
+			page = bookService.getBooksAfter(after, loadPageSize);
+			synchronized (loadLock) {
+				for (Book book : page) {
+					if (!changedDuringLoad.contains(book.getBookId())) {
+						catalog.put(book);
+					}
+				}
+			}
+			if (!page.isEmpty()) {
+				after = page.get(page.size() - 1).getBookId();
+			}
+		} while (page.size() == loadPageSize);
+		synchronized (loadLock) {
+			catalog.trimToSize();
+			caughtUp = true;
+			changedDuringLoad.clear();
+		}
+		warmSnapshot = null;
+		logger.info("Catalog loaded with " + catalog.size() + " titles by " + catalog.authorCount()
+				+ " authors in " + catalog.allocatedBytes() + " bytes");
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onBookCopiesChanged(BookCopiesChangedEvent event) {
+		if (!serveReads) {
+			return;
+		}
+		synchronized (loadLock) {
+			if (!caughtUp) {
+				changedDuringLoad.add(event.getBook().getBookId());
+			}
+			catalog.put(event.getBook());
+		}
+	}
+
+	public Optional<BookView> findBook(String bookId) {
+		return catalog.get(bookId);
+	}
+
+	/**
+	 * Look up a title from memory, from the snapshot while the load is still
+	 * running, and from the database for titles neither has, such as titles
+	 * written by other instances
+	 * @param bookId unique book identifier
+	 * @return title if it exists
+	 */
+	public Optional<Book> getBook(String bookId) {
+		Optional<BookView> view = catalog.get(bookId);
+		MappedCatalog snapshot = warmSnapshot;
+		if (view.isEmpty() && snapshot != null) {
+			view = snapshot.get(bookId);
+		}
+		if (view.isPresent()) {
+			return view.map(BookView::toBook);
+		}
+		return bookService.getBook(bookId);
+	}
+
+	/**
+	 * Write a new snapshot if the catalog changed since the last one.
+	 * Written to a temporary file first and moved into place, so a reader
+	 * never maps a half written file.
+	 */
+	@Scheduled(fixedDelayString = "${booklibrary.catalog.snapshot.interval-ms:60000}",
+			initialDelayString = "${booklibrary.catalog.snapshot.interval-ms:60000}")
+	public synchronized void writeSnapshot() {
+		if (!serveReads || !snapshotEnabled || !caughtUp || catalog.version() == snapshotVersion) {
+			return;
+		}
+		try {
+			Files.createDirectories(snapshotPath.toAbsolutePath().getParent());
+			Path temp = Files.createTempFile(snapshotPath.toAbsolutePath().getParent(),
+					snapshotPath.getFileName().toString(), ".tmp");
+			try {
+				long version;
+				try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+					version = catalog.writeSnapshot(out, snapshotSequence + 1);
+				}
+				Files.move(temp, snapshotPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+				snapshotSequence++;
+				snapshotVersion = version;
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+		} catch (IOException e) {
+			logger.warning("Could not write catalog snapshot " + snapshotPath + ": " + e.getMessage());
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		loader.shutdownNow();
+		writeSnapshot();
+	}
+
+	public boolean isCaughtUp() {
+		return caughtUp;
+	}
+
+	public Optional<MappedCatalog> getWarmSnapshot() {
+		return Optional.ofNullable(warmSnapshot);
+	}
+
+	public CompactCatalog getCatalog() {
+		return catalog;
+	}
+}
@@ -0,0 +1,16 @@
+package com.fis.booklibrary.casestudy.service;
+
+import com.fis.booklibrary.casestudy.model.Book;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published by BookService whenever a book is saved or its copies change
+ */
+@Getter
+@AllArgsConstructor
+public class BookCopiesChangedEvent {
+
+	private final Book book;
+}
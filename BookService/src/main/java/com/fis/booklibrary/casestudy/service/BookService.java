@@ -1,12 +1,29 @@
 package com.fis.booklibrary.casestudy.service;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import jakarta.annotation.PostConstruct;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.fis.booklibrary.casestudy.datasource.BookDataSourceProperties;
+import com.fis.booklibrary.casestudy.datasource.ReadYourWritesTracker;
+import com.fis.booklibrary.casestudy.datasource.RoutingContext;
+import com.fis.booklibrary.casestudy.datasource.ShardRebalancer;
+import com.fis.booklibrary.casestudy.datasource.ShardRouter;
 import com.fis.booklibrary.casestudy.model.Book;
 import com.fis.booklibrary.casestudy.repository.BookRepository;
 
@@ -18,24 +35,172 @@ public class BookService {
 	@Autowired
 	private BookRepository bookRepository;
 	
+	@Autowired
+	private ReadYourWritesTracker readYourWritesTracker;
+	
+	@Autowired
+	private ShardRouter shardRouter;
+	
+	@Autowired
+	private BookDataSourceProperties dataSourceProperties;
+	
+	/**
+	 * Only present with sharding enabled
+	 */
+	@Autowired(required = false)
+	private ShardRebalancer shardRebalancer;
+	
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+	
+	@Autowired
+	private ApplicationEventPublisher eventPublisher;
+	
+	private TransactionTemplate readOnlyTransaction;
+	
+	@PostConstruct
+	public void init() {
+		readOnlyTransaction = new TransactionTemplate(transactionManager);
+		readOnlyTransaction.setReadOnly(true);
+	}
+	
+	/**
+	 * Reads every shard in parallel, each in its own read-only transaction.
+	 * When reads go to replicas, the books written recently are read again
+	 * from their primary, so a replica that has not caught up neither hides
+	 * the write nor leaves the book out.
+	 * @return all books
+	 */
 	public List<Book> getBooks(){
-		return bookRepository.findAll();
+		List<Book> books = shardRouter.scatterGather(() -> readOnlyTransaction.execute(status -> bookRepository.findAll()));
+		if (!dataSourceProperties.getRouting().isEnabled()) {
+			return books;
+		}
+		Set<String> recentlyWritten = readYourWritesTracker.getRecentlyWritten();
+		if (recentlyWritten.isEmpty()) {
+			return books;
+		}
+		Map<String, Book> written = recentlyWritten.stream()
+				.collect(Collectors.groupingBy(shardRouter::shardFor)).entrySet().stream()
+				.flatMap(shard -> RoutingContext.onShard(shard.getKey(), () -> readOnlyTransaction.execute(status ->
+						RoutingContext.onPrimary(() -> bookRepository.findAllById(shard.getValue())))).stream())
+				.collect(Collectors.toMap(Book::getBookId, book -> book));
+		List<Book> merged = new ArrayList<>(books.size() + written.size());
+		for (Book book : books) {
+			Book primaryBook = written.remove(book.getBookId());
+			merged.add(primaryBook != null ? primaryBook : book);
+		}
+		//Whatever is left was written but has not reached the replica yet
+		merged.addAll(written.values());
+		return merged;
 	}
 	
+	/**
+	 * Keyset page of books ordered by bookId, merged across shards
+	 * @param after bookId the page starts after, "" for the first page
+	 * @param limit maximum number of books
+	 * @return books with a bookId greater than after
+	 */
+	public List<Book> getBooksAfter(String after, int limit) {
+		PageRequest page = PageRequest.of(0, limit);
+		List<Book> books = shardRouter.scatterGather(() -> readOnlyTransaction.execute(status ->
+				bookRepository.findByBookIdGreaterThanOrderByBookIdAsc(after, page)));
+		return books.stream()
+				.sorted(Comparator.comparing(Book::getBookId))
+				.limit(limit)
+				.toList();
+	}
+	
+	@Transactional(readOnly = true)
 	public Optional<Book> getBook(String bookId){
-		return bookRepository.findById(bookId);
+		return shardRouter.onOwningShard(bookId, () -> {
+			Optional<Book> book = readYourWritesTracker.isRecentlyWritten(bookId)
+					? RoutingContext.onPrimary(() -> bookRepository.findById(bookId))
+					: bookRepository.findById(bookId);
+			if (book.isEmpty() && isRebalancing()) {
+				return shardRebalancer.moveToOwner(bookId);
+			}
+			return book;
+		});
 	}
 
+	@Transactional
 	public Book updateCopiesAvailable(String bookId, Integer remainingCopies) {
+		return shardRouter.onOwningShard(bookId, () -> {
+			Optional<Book> book = findForUpdate(bookId);
+			
+			if(book.isPresent()) {
+				book.get().setCopiesAvailable(remainingCopies);
+				logger.info("Updated book copies for bookId: " + bookId + " to: " + remainingCopies);
+				Book savedBook = bookRepository.save(book.get());
+				readYourWritesTracker.recordWrite(bookId);
+				eventPublisher.publishEvent(new BookCopiesChangedEvent(savedBook));
+				return savedBook;
+			} else {
+				logger.warning("Book not found with bookId: " + bookId);
+				throw new IllegalArgumentException("Book not found with bookId: " + bookId);
+			}
+		});
+	}
+	
+	/**
+	 * Set the available copies only if they are still what the caller read,
+	 * so a correction computed from an earlier read never overwrites a
+	 * checkout made since
+	 * @param bookId unique book identifier
+	 * @param expectedCopies available copies the caller read
+	 * @param remainingCopies new available copies
+	 * @return updated book, empty if the copies changed since they were read
+	 * @throws IllegalArgumentException if the book does not exist
+	 */
+	@Transactional
+	public Optional<Book> compareAndSetCopiesAvailable(String bookId, int expectedCopies, int remainingCopies) {
+		return shardRouter.onOwningShard(bookId, () -> {
+			if (isRebalancing() && !bookRepository.existsById(bookId)) {
+				shardRebalancer.moveToOwner(bookId);
+			}
+			if (bookRepository.compareAndSetCopiesAvailable(bookId, expectedCopies, remainingCopies) == 0) {
+				if (!bookRepository.existsById(bookId)) {
+					throw new IllegalArgumentException("Book not found with bookId: " + bookId);
+				}
+				return Optional.empty();
+			}
+			Book savedBook = bookRepository.findById(bookId).get();
+			logger.info("Updated book copies for bookId: " + bookId + " from: " + expectedCopies + " to: " + remainingCopies);
+			readYourWritesTracker.recordWrite(bookId);
+			eventPublisher.publishEvent(new BookCopiesChangedEvent(savedBook));
+			return Optional.of(savedBook);
+		});
+	}
+	
+	/**
+	 * Save books, each on the shard owning it
+	 * @param books books to save
+	 * @return saved books
+	 */
+	public List<Book> saveBooks(List<Book> books) {
+		Map<Integer, List<Book>> booksByShard = books.stream()
+				.collect(Collectors.groupingBy(book -> shardRouter.shardFor(book.getBookId())));
+		List<Book> savedBooks = new ArrayList<>();
+		booksByShard.forEach((shard, shardBooks) ->
+				savedBooks.addAll(RoutingContext.onShard(shard, () -> bookRepository.saveAll(shardBooks))));
+		savedBooks.forEach(book -> eventPublisher.publishEvent(new BookCopiesChangedEvent(book)));
+		return savedBooks;
+	}
+	
+	/**
+	 * Find a book on the owning shard, moving it there first if a shard
+	 * rebalance has not reached it yet
+	 */
+	private Optional<Book> findForUpdate(String bookId) {
 		Optional<Book> book = bookRepository.findById(bookId);
-		
-		if(book.isPresent()) {
-			book.get().setCopiesAvailable(remainingCopies);
-			logger.info("Updated book copies for bookId: " + bookId + " to: " + remainingCopies);
-			return bookRepository.save(book.get());
-		} else {
-			logger.warning("Book not found with bookId: " + bookId);
-			throw new IllegalArgumentException("Book not found with bookId: " + bookId);
+		if (book.isEmpty() && isRebalancing() && shardRebalancer.moveToOwner(bookId).isPresent()) {
+			book = bookRepository.findById(bookId);
 		}
+		return book;
+	}
+	
+	private boolean isRebalancing() {
+		return shardRebalancer != null && shardRebalancer.isRunning();
 	}
 }
@@ -0,0 +1,7 @@
+CREATE TABLE IF NOT EXISTS BOOK (
+	BOOK_ID VARCHAR(255) NOT NULL PRIMARY KEY,
+	BOOK_NAME VARCHAR(255),
+	AUTHOR VARCHAR(255),
+	AVAILABLE_COPIES INTEGER NOT NULL,
+	TOTAL_COPIES INTEGER NOT NULL
+);
@@ -0,0 +1,69 @@
+package com.fis.booklibrary.casestudy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.MockMvcPrint;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.fis.booklibrary.casestudy.model.Book;
+import com.fis.booklibrary.casestudy.service.BookService;
+
+/**
+ * Performance regression suite for BookController, run with:
+ * mvn test -Pperf-regression
+ * Fixed workload over 200 titles, compared with src/test/resources/perf-baseline.properties
+ */
+@SpringBootTest(properties = { "eureka.client.enabled=false", "booklibrary.catalog.snapshot.enabled=false" })
+@AutoConfigureMockMvc(print = MockMvcPrint.NONE)
+@EnabledIfSystemProperty(named = "perf.enabled", matches = "true")
+class BookControllerPerformanceTests {
+
+	private static final int TITLES = 200;
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private BookService bookService;
+
+	@Test
+	public void endpointsStayWithinBaseline() throws Exception {
+		List<Book> books = new ArrayList<>();
+		for (int i = 0; i < TITLES; i++) {
+			books.add(new Book(bookId(i), "Performance Title " + i, "Author " + (i % 20), 5, 5));
+		}
+		bookService.saveBooks(books);
+
+		PerformanceHarness harness = new PerformanceHarness();
+		harness.measure("books.get", 5000, 3000, i ->
+				mockMvc.perform(get("/books/" + bookId(i % TITLES))).andExpect(status().isOk()));
+		harness.measure("books.list", 1000, 300, i ->
+				mockMvc.perform(get("/books")).andExpect(status().isOk()));
+		harness.measure("books.inventory", 3000, 1000, i ->
+				mockMvc.perform(get("/books/inventory").param("after", bookId(i % 100)).param("limit", "50"))
+					.andExpect(status().isOk()));
+		harness.measure("books.availability", 10000, 5000, i ->
+				mockMvc.perform(get("/books/availability")).andExpect(status().isOk()));
+		harness.measure("books.update", 3000, 1000, i ->
+				mockMvc.perform(put("/books/" + bookId(i % TITLES)).contentType(MediaType.APPLICATION_JSON)
+						.content(Integer.toString(i % 6))).andExpect(status().isOk()));
+
+		assertThat(harness.compareWithBaseline()).as("Regressions beyond the thresholds").isEmpty();
+	}
+
+	private static String bookId(int i) {
+		return String.format("P%04d", i);
+	}
+}
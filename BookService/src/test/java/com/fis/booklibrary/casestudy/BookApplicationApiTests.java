@@ -1,5 +1,93 @@
-package com.fis.booklibrary.casestudy;
-
-public class BookApplicationApiTests {
-
-}
+package com.fis.booklibrary.casestudy;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.fis.booklibrary.casestudy.model.Book;
+import com.fis.booklibrary.casestudy.repository.BookRepository;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class BookApplicationApiTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@Test
+	public void getBook() throws Exception {
+		bookRepository.save(new Book("B6100", "Api Contracts", "SK", 3, 4));
+
+		mockMvc.perform(get("/books/B6100"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.bookId").value("B6100"))
+			.andExpect(jsonPath("$.bookName").value("Api Contracts"))
+			.andExpect(jsonPath("$.copiesAvailable").value(3))
+			.andExpect(jsonPath("$.totalCopies").value(4));
+
+		mockMvc.perform(get("/books/B6199"))
+			.andExpect(status().isNotFound());
+	}
+
+	@Test
+	public void updateBook() throws Exception {
+		bookRepository.save(new Book("B6101", "Api Updates", "SK", 2, 2));
+
+		mockMvc.perform(put("/books/B6101").contentType(MediaType.APPLICATION_JSON).content("1"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.copiesAvailable").value(1));
+
+		mockMvc.perform(put("/books/B6101").contentType(MediaType.APPLICATION_JSON).content("-1"))
+			.andExpect(status().isBadRequest());
+
+		mockMvc.perform(put("/books/B6199").contentType(MediaType.APPLICATION_JSON).content("1"))
+			.andExpect(status().isNotFound());
+	}
+
+	@Test
+	public void compareAndSetBook() throws Exception {
+		bookRepository.save(new Book("B6104", "Api Corrections", "SK", 2, 3));
+
+		mockMvc.perform(put("/books/B6104").param("expectedAvailable", "2")
+				.contentType(MediaType.APPLICATION_JSON).content("3"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.copiesAvailable").value(3));
+
+		//A stale read does not overwrite the copies
+		mockMvc.perform(put("/books/B6104").param("expectedAvailable", "2")
+				.contentType(MediaType.APPLICATION_JSON).content("1"))
+			.andExpect(status().isConflict());
+		mockMvc.perform(get("/books/B6104"))
+			.andExpect(jsonPath("$.copiesAvailable").value(3));
+
+		mockMvc.perform(put("/books/B6199").param("expectedAvailable", "2")
+				.contentType(MediaType.APPLICATION_JSON).content("1"))
+			.andExpect(status().isNotFound());
+	}
+
+	@Test
+	public void getInventory() throws Exception {
+		bookRepository.save(new Book("B6102", "Api Paging", "SK", 1, 1));
+		bookRepository.save(new Book("B6103", "Api Paging Too", "SK", 1, 1));
+
+		mockMvc.perform(get("/books/inventory").param("after", "B6101").param("limit", "2"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.length()").value(2))
+			.andExpect(jsonPath("$[0].bookId").value("B6102"))
+			.andExpect(jsonPath("$[1].bookId").value("B6103"));
+
+		mockMvc.perform(get("/books/inventory").param("limit", "0"))
+			.andExpect(status().isBadRequest());
+	}
+}
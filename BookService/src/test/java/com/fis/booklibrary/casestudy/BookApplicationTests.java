@@ -10,8 +10,12 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import com.fis.booklibrary.casestudy.model.AvailabilityState;
+import com.fis.booklibrary.casestudy.model.AvailabilitySummary;
 import com.fis.booklibrary.casestudy.model.Book;
+import com.fis.booklibrary.casestudy.model.BookAvailability;
 import com.fis.booklibrary.casestudy.repository.BookRepository;
+import com.fis.booklibrary.casestudy.service.BookAvailabilityService;
 import com.fis.booklibrary.casestudy.service.BookService;
 
 @SpringBootTest
@@ -23,6 +27,9 @@ class BookApplicationTests {
 	@Autowired
 	private BookRepository bookRepository;
 	
+	@Autowired
+	private BookAvailabilityService bookAvailabilityService;
+	
 	@Test
 	void contextLoads() {
 	}
@@ -70,4 +77,30 @@ class BookApplicationTests {
 		assertThat(book.getCopiesAvailable()).isEqualTo(4) ;
 		
 	}
+	
+	@Test
+	public void availabilitySummaryTracksCopyUpdates() {
+		bookService.saveBooks(List.of(new Book("B1414","Spring in Action","CW",5,5)));
+		AvailabilitySummary before = bookAvailabilityService.getSummary();
+		
+		//Last copy checked out
+		bookService.updateCopiesAvailable("B1414", 0);
+		AvailabilitySummary after = bookAvailabilityService.getSummary();
+		
+		assertThat(after.getCountsByState().get(AvailabilityState.UNAVAILABLE))
+			.isEqualTo(before.getCountsByState().get(AvailabilityState.UNAVAILABLE) + 1);
+		assertThat(after.getLowStock()).extracting(BookAvailability::getBookId).contains("B1414");
+		assertThat(after.getLowStock().get(0).getCopiesAvailable()).isZero();
+	}
+	
+	@Test
+	public void getBooksAfterPagesByBookId() {
+		bookService.saveBooks(List.of(new Book("B1502","Kotlin in Action","DJ",2,2), new Book("B1501","Effective Java","JB",3,3)));
+		
+		//Keyset page starting after B1500, ordered by bookId
+		List<Book> page = bookService.getBooksAfter("B1500", 2);
+		
+		assertThat(page).extracting(Book::getBookId).containsExactly("B1501", "B1502");
+		assertThat(bookService.getBooksAfter("B1501", 1)).extracting(Book::getBookId).containsExactly("B1502");
+	}
 }
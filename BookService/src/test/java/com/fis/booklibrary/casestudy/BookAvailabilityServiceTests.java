@@ -0,0 +1,47 @@
+package com.fis.booklibrary.casestudy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fis.booklibrary.casestudy.model.AvailabilityState;
+import com.fis.booklibrary.casestudy.model.AvailabilitySummary;
+import com.fis.booklibrary.casestudy.model.Book;
+import com.fis.booklibrary.casestudy.model.BookAvailability;
+import com.fis.booklibrary.casestudy.service.BookAvailabilityService;
+import com.fis.booklibrary.casestudy.service.BookCopiesChangedEvent;
+import com.fis.booklibrary.casestudy.service.BookService;
+
+class BookAvailabilityServiceTests {
+
+	@Test
+	public void changesDuringTheCatalogReadAreNotReverted() {
+		BookService bookService = mock(BookService.class);
+		BookAvailabilityService availabilityService = new BookAvailabilityService();
+		ReflectionTestUtils.setField(availabilityService, "bookService", bookService);
+		ReflectionTestUtils.setField(availabilityService, "lowStockThreshold", 2);
+		ReflectionTestUtils.setField(availabilityService, "lowStockLimit", 100);
+		when(bookService.getBooks()).thenReturn(List.of(new Book("B1212", "Stocked", "SK", 5, 5)));
+		availabilityService.refresh();
+
+		when(bookService.getBooks()).thenAnswer(invocation -> {
+			//A checkout commits after the catalog was read
+			availabilityService.onBookCopiesChanged(new BookCopiesChangedEvent(new Book("B1212", "Stocked", "SK", 0, 5)));
+			return List.of(new Book("B1212", "Stocked", "SK", 5, 5));
+		});
+		AvailabilitySummary summary = availabilityService.refresh();
+
+		assertThat(summary.getCountsByState().get(AvailabilityState.UNAVAILABLE)).isEqualTo(1);
+		assertThat(summary.getLowStock()).extracting(BookAvailability::getCopiesAvailable).containsExactly(0);
+
+		//A later refresh reads the change and no longer applies it again
+		when(bookService.getBooks()).thenReturn(List.of(new Book("B1212", "Stocked", "SK", 1, 5)));
+		assertThat(availabilityService.refresh().getLowStock()).extracting(BookAvailability::getCopiesAvailable)
+			.containsExactly(1);
+	}
+}
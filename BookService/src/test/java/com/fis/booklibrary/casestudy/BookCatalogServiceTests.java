@@ -0,0 +1,63 @@
+package com.fis.booklibrary.casestudy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fis.booklibrary.casestudy.model.Book;
+import com.fis.booklibrary.casestudy.service.BookCatalogService;
+import com.fis.booklibrary.casestudy.service.BookCopiesChangedEvent;
+import com.fis.booklibrary.casestudy.service.BookService;
+
+class BookCatalogServiceTests {
+
+	@Test
+	public void changesDuringTheLoadAreNotOverwrittenByOlderPages() {
+		BookService bookService = mock(BookService.class);
+		BookCatalogService catalogService = catalogService(bookService);
+		when(bookService.getBooksAfter(eq(""), anyInt())).thenAnswer(invocation -> {
+			//A checkout commits after the page was read
+			catalogService.onBookCopiesChanged(new BookCopiesChangedEvent(new Book("B1212", "Loaded", "SK", 1, 2)));
+			return List.of(new Book("B1212", "Loaded", "SK", 2, 2), new Book("B1313", "Loaded", "SK", 6, 6));
+		});
+
+		catalogService.load();
+
+		assertThat(catalogService.isCaughtUp()).isTrue();
+		assertThat(catalogService.getBook("B1212").get().getCopiesAvailable()).isEqualTo(1);
+		assertThat(catalogService.getBook("B1313").get().getCopiesAvailable()).isEqualTo(6);
+
+		//Changes after the load are applied as they come
+		catalogService.onBookCopiesChanged(new BookCopiesChangedEvent(new Book("B1313", "Loaded", "SK", 5, 6)));
+		assertThat(catalogService.getBook("B1313").get().getCopiesAvailable()).isEqualTo(5);
+	}
+
+	@Test
+	public void titlesMissingFromTheCatalogAreReadFromTheDatabase() {
+		BookService bookService = mock(BookService.class);
+		BookCatalogService catalogService = catalogService(bookService);
+		when(bookService.getBooksAfter(eq(""), anyInt())).thenReturn(List.of());
+		catalogService.load();
+
+		//Written by another instance after the load
+		when(bookService.getBook("B4232")).thenReturn(Optional.of(new Book("B4232", "Elsewhere", "SK", 5, 5)));
+		assertThat(catalogService.getBook("B4232")).contains(new Book("B4232", "Elsewhere", "SK", 5, 5));
+		assertThat(catalogService.getBook("B9999")).isEmpty();
+	}
+
+	private static BookCatalogService catalogService(BookService bookService) {
+		BookCatalogService catalogService = new BookCatalogService();
+		ReflectionTestUtils.setField(catalogService, "bookService", bookService);
+		ReflectionTestUtils.setField(catalogService, "serveReads", true);
+		ReflectionTestUtils.setField(catalogService, "loadPageSize", 1000);
+		return catalogService;
+	}
+}
@@ -0,0 +1,75 @@
+package com.fis.booklibrary.casestudy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.fis.booklibrary.casestudy.model.Book;
+import com.fis.booklibrary.casestudy.repository.BookRepository;
+import com.fis.booklibrary.casestudy.service.BookService;
+
+@SpringBootTest(properties = {
+		"booklibrary.datasource.routing.enabled=true",
+		"booklibrary.datasource.routing.read-your-writes-window-ms=60000",
+		"booklibrary.datasource.primary.url=jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1",
+		"booklibrary.datasource.replicas[0].url=jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1" })
+class BookDataSourceRoutingTests {
+
+	@Autowired
+	private BookService bookService;
+	
+	@Autowired
+	private BookRepository bookRepository;
+	
+	@Test
+	public void readsGoToReplicaUntilBookIsWritten() {
+		bookRepository.save(new Book("B7001","Distributed Systems","MvS",3,3));
+		
+		//Replica still holds a stale copy count
+		JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1", "sa", ""));
+		replica.update("INSERT INTO BOOK (BOOK_ID, BOOK_NAME, AUTHOR, AVAILABLE_COPIES, TOTAL_COPIES) VALUES (?,?,?,?,?)",
+				"B7001", "Distributed Systems", "MvS", 2, 3);
+		
+		assertThat(bookService.getBook("B7001").get().getCopiesAvailable()).isEqualTo(2);
+		
+		//After a write the book is read back from the primary
+		bookService.updateCopiesAvailable("B7001", 1);
+		
+		assertThat(bookService.getBook("B7001").get().getCopiesAvailable()).isEqualTo(1);
+	}
+	
+	@Test
+	public void listReadsOnlyTheWrittenBooksFromThePrimary() {
+		bookRepository.save(new Book("B7002","Replicated Logs","MvS",3,3));
+		bookRepository.save(new Book("B7003","Consensus","MvS",3,3));
+		JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1", "sa", ""));
+		replica.update("INSERT INTO BOOK (BOOK_ID, BOOK_NAME, AUTHOR, AVAILABLE_COPIES, TOTAL_COPIES) VALUES (?,?,?,?,?)",
+				"B7002", "Replicated Logs", "MvS", 2, 3);
+		replica.update("INSERT INTO BOOK (BOOK_ID, BOOK_NAME, AUTHOR, AVAILABLE_COPIES, TOTAL_COPIES) VALUES (?,?,?,?,?)",
+				"B7003", "Consensus", "MvS", 2, 3);
+		
+		bookService.updateCopiesAvailable("B7002", 1);
+		
+		//The written book comes from the primary, the others still from the replica
+		assertThat(bookService.getBooks()).filteredOn(book -> book.getBookId().startsWith("B700"))
+			.extracting(Book::getBookId, Book::getCopiesAvailable)
+			.contains(tuple("B7002", 1), tuple("B7003", 2));
+	}
+	
+	@Test
+	public void listIncludesWrittenBooksTheReplicaHasNotReceived() {
+		bookRepository.save(new Book("B7004","Gossip Protocols","MvS",3,3));
+		
+		//The replica has not received B7004 at all
+		bookService.updateCopiesAvailable("B7004", 2);
+		
+		assertThat(bookService.getBooks()).filteredOn(book -> book.getBookId().equals("B7004"))
+			.extracting(Book::getBookId, Book::getCopiesAvailable)
+			.containsExactly(tuple("B7004", 2));
+	}
+}
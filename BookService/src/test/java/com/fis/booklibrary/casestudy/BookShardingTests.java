@@ -0,0 +1,160 @@
+package com.fis.booklibrary.casestudy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fis.booklibrary.casestudy.datasource.ShardRebalancer;
+import com.fis.booklibrary.casestudy.datasource.ShardRouter;
+import com.fis.booklibrary.casestudy.datasource.ShardRoutingDataSource;
+import com.fis.booklibrary.casestudy.model.Book;
+import com.fis.booklibrary.casestudy.service.BookService;
+
+@SpringBootTest(properties = {
+		"booklibrary.datasource.sharding.enabled=true",
+		"booklibrary.datasource.shards[0].url=jdbc:h2:mem:sharding-0;DB_CLOSE_DELAY=-1",
+		"booklibrary.datasource.shards[1].url=jdbc:h2:mem:sharding-1;DB_CLOSE_DELAY=-1",
+		"booklibrary.datasource.shards[2].url=jdbc:h2:mem:sharding-2;DB_CLOSE_DELAY=-1" })
+class BookShardingTests {
+
+	@Autowired
+	private BookService bookService;
+	
+	@Autowired
+	private ShardRouter shardRouter;
+	
+	@Autowired
+	private ShardRoutingDataSource shards;
+	
+	@Autowired
+	private ShardRebalancer shardRebalancer;
+	
+	@Test
+	public void booksAreStoredOnOwningShard() {
+		List<Book> books = new ArrayList<>();
+		for (int i = 0; i < 30; i++) {
+			books.add(new Book("S" + i, "Sharded Title " + i, "SK", 3, 3));
+		}
+		bookService.saveBooks(books);
+		
+		for (Book book : books) {
+			int owner = shardRouter.shardFor(book.getBookId());
+			for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+				assertThat(countOn(shard, book.getBookId())).isEqualTo(shard == owner ? 1 : 0);
+			}
+			assertThat(bookService.getBook(book.getBookId())).isPresent();
+		}
+		
+		//Scatter-gather read returns the books of every shard
+		assertThat(bookService.getBooks()).extracting(Book::getBookId)
+			.contains(books.stream().map(Book::getBookId).toArray(String[]::new));
+		
+		Book updated = bookService.updateCopiesAvailable("S7", 1);
+		assertThat(updated.getCopiesAvailable()).isEqualTo(1);
+		assertThat(bookService.getBook("S7").get().getCopiesAvailable()).isEqualTo(1);
+	}
+	
+	@Test
+	public void rebalanceMovesMisplacedRows() {
+		String bookId = "R1";
+		int owner = shardRouter.shardFor(bookId);
+		int wrongShard = (owner + 1) % shardRouter.getShardCount();
+		new JdbcTemplate(shards.getShard(wrongShard)).update(
+				"INSERT INTO BOOK (BOOK_ID, BOOK_NAME, AUTHOR, AVAILABLE_COPIES, TOTAL_COPIES) VALUES (?,?,?,?,?)",
+				bookId, "Moved Title", "SK", 2, 2);
+		
+		shardRebalancer.rebalance();
+		
+		assertThat(countOn(wrongShard, bookId)).isZero();
+		assertThat(countOn(owner, bookId)).isEqualTo(1);
+		assertThat(bookService.getBook(bookId).get().getBookName()).isEqualTo("Moved Title");
+	}
+	
+	@Test
+	public void rebalanceKeepsTheRowAlreadyOnItsOwner() {
+		//An interrupted move left both copies, writes went to the owner since
+		String bookId = "R2";
+		int owner = shardRouter.shardFor(bookId);
+		int wrongShard = (owner + 1) % shardRouter.getShardCount();
+		insertOn(owner, bookId, 1);
+		insertOn(wrongShard, bookId, 2);
+		
+		shardRebalancer.rebalance();
+		
+		assertThat(countOn(wrongShard, bookId)).isZero();
+		assertThat(bookService.getBook(bookId).get().getCopiesAvailable()).isEqualTo(1);
+	}
+	
+	@Test
+	public void updateOfTheSourceRowDuringTheMoveIsKept() throws Exception {
+		String bookId = "R3";
+		int owner = shardRouter.shardFor(bookId);
+		int wrongShard = (owner + 1) % shardRouter.getShardCount();
+		insertOn(wrongShard, bookId, 2);
+		
+		CompletableFuture<?> rebalance = new TransactionTemplate(new DataSourceTransactionManager(shards.getShard(wrongShard)))
+			.execute(status -> {
+				new JdbcTemplate(shards.getShard(wrongShard)).update(
+						"UPDATE BOOK SET AVAILABLE_COPIES = 1 WHERE BOOK_ID = ?", bookId);
+				//The move waits for the row lock held by this update
+				CompletableFuture<?> started = CompletableFuture.runAsync(shardRebalancer::rebalance);
+				sleep(200);
+				return started;
+			});
+		rebalance.get();
+		
+		assertThat(countOn(wrongShard, bookId)).isZero();
+		assertThat(bookService.getBook(bookId).get().getCopiesAvailable()).isEqualTo(1);
+	}
+	
+	@Test
+	public void lookupsDuringARebalanceMoveTheRowFirst() {
+		String readBookId = "R4";
+		String updatedBookId = "R5";
+		insertOn((shardRouter.shardFor(readBookId) + 1) % shardRouter.getShardCount(), readBookId, 2);
+		insertOn((shardRouter.shardFor(updatedBookId) + 1) % shardRouter.getShardCount(), updatedBookId, 2);
+		AtomicBoolean running = (AtomicBoolean) ReflectionTestUtils.getField(shardRebalancer, "running");
+		running.set(true);
+		try {
+			assertThat(bookService.getBook(readBookId).get().getCopiesAvailable()).isEqualTo(2);
+			assertThat(countOn(shardRouter.shardFor(readBookId), readBookId)).isEqualTo(1);
+			
+			assertThat(bookService.updateCopiesAvailable(updatedBookId, 1).getCopiesAvailable()).isEqualTo(1);
+			assertThat(countOn(shardRouter.shardFor(updatedBookId), updatedBookId)).isEqualTo(1);
+		} finally {
+			running.set(false);
+		}
+		assertThat(bookService.getBook(updatedBookId).get().getCopiesAvailable()).isEqualTo(1);
+		assertThat(bookService.getBook("R9")).isEmpty();
+	}
+	
+	private void insertOn(int shard, String bookId, int copiesAvailable) {
+		new JdbcTemplate(shards.getShard(shard)).update(
+				"INSERT INTO BOOK (BOOK_ID, BOOK_NAME, AUTHOR, AVAILABLE_COPIES, TOTAL_COPIES) VALUES (?,?,?,?,?)",
+				bookId, "Moved Title", "SK", copiesAvailable, 2);
+	}
+	
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private int countOn(int shard, String bookId) {
+		return new JdbcTemplate(shards.getShard(shard))
+				.queryForObject("SELECT COUNT(*) FROM BOOK WHERE BOOK_ID = ?", Integer.class, bookId);
+	}
+}
@@ -0,0 +1,80 @@
+package com.fis.booklibrary.casestudy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import com.fis.booklibrary.casestudy.catalog.CompactCatalog;
+import com.fis.booklibrary.casestudy.model.Book;
+
+/**
+ * Heap footprint of the catalog held as Book entities in a HashMap versus
+ * the CompactCatalog, at 1M and 10M titles by default. Titles are
+ * generated with 50k distinct authors.
+ *
+ * Run with: mvn test -Dtest=CatalogFootprintBenchmarkTests -Dbenchmark.catalog=true -DargLine=-Xmx8g
+ * (optionally -Dbenchmark.catalog.sizes=1000000,5000000)
+ */
+@EnabledIfSystemProperty(named = "benchmark.catalog", matches = "true")
+class CatalogFootprintBenchmarkTests {
+
+	private static final int AUTHORS = 50_000;
+
+	private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+	@Test
+	void compareHeapFootprint() {
+		List<String> rows = new ArrayList<>();
+		for (String size : System.getProperty("benchmark.catalog.sizes", "1000000,10000000").split(",")) {
+			int titles = Integer.parseInt(size.trim());
+
+			long before = usedHeap();
+			Map<String, Book> entities = new HashMap<>();
+			for (int i = 0; i < titles; i++) {
+				Book book = book(i);
+				entities.put(book.getBookId(), book);
+			}
+			long entityBytes = usedHeap() - before;
+			assertThat(entities).hasSize(titles);
+			entities = null;
+
+			before = usedHeap();
+			CompactCatalog catalog = new CompactCatalog();
+			for (int i = 0; i < titles; i++) {
+				catalog.put(book(i));
+			}
+			catalog.trimToSize();
+			long compactBytes = usedHeap() - before;
+			assertThat(catalog.size()).isEqualTo(titles);
+
+			rows.add(String.format("%,12d %16.1f %16.1f %14.1f %12.1fx", titles, entityBytes / 1048576.0,
+					compactBytes / 1048576.0, (double) compactBytes / titles, (double) entityBytes / compactBytes));
+			catalog = null;
+		}
+
+		System.out.println();
+		System.out.println("Catalog heap footprint");
+		System.out.println(String.format("%12s %16s %16s %14s %13s", "titles", "HashMap<Book> MB", "compact MB",
+				"bytes/title", "reduction"));
+		rows.forEach(System.out::println);
+	}
+
+	private Book book(int i) {
+		return new Book(String.format("B%08d", i), "Collected Works Volume " + i, "Author " + (i % AUTHORS), i % 10, 10);
+	}
+
+	private long usedHeap() {
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+}
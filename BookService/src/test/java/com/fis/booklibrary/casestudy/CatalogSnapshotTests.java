@@ -0,0 +1,78 @@
+package com.fis.booklibrary.casestudy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fis.booklibrary.casestudy.catalog.BookView;
+import com.fis.booklibrary.casestudy.catalog.CompactCatalog;
+import com.fis.booklibrary.casestudy.catalog.MappedCatalog;
+import com.fis.booklibrary.casestudy.model.Book;
+
+class CatalogSnapshotTests {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	public void mapsWrittenSnapshot() throws IOException {
+		CompactCatalog catalog = new CompactCatalog();
+		catalog.put(new Book("B1212", "History of Amazon Valley", "Ross Suarez", 0, 2));
+		catalog.put(new Book("B4232", "Language Fundamentals", "H S Parkmay", 5, 5));
+		catalog.put(new Book("B5000", "Sorting Amazon Myths", null, 1, 1));
+		for (int i = 0; i < 3000; i++) {
+			catalog.put(new Book("G" + i, "Title " + i, "Author " + (i % 7), i % 4, 4));
+		}
+		Path file = write(catalog, 7);
+		
+		MappedCatalog snapshot = MappedCatalog.open(file).get();
+		assertThat(snapshot.getSequence()).isEqualTo(7);
+		assertThat(snapshot.size()).isEqualTo(3003);
+		
+		BookView view = snapshot.get("B1212").get();
+		assertThat(view.toBook()).isEqualTo(new Book("B1212", "History of Amazon Valley", "Ross Suarez", 0, 2));
+		assertThat(snapshot.get("B5000").get().getAuthor()).isNull();
+		assertThat(snapshot.get("G2999").get().getAuthor()).isEqualTo("Author 3");
+		assertThat(snapshot.get("G2999").get().getCopiesAvailable()).isEqualTo(3);
+		assertThat(snapshot.get("B9999")).isEmpty();
+		
+		//The snapshot is a copy, later changes do not show through
+		catalog.updateCopiesAvailable("B1212", 2);
+		assertThat(view.getCopiesAvailable()).isZero();
+	}
+	
+	@Test
+	public void ignoresMissingOrForeignSnapshots() throws IOException {
+		assertThat(MappedCatalog.open(directory.resolve("absent.snapshot"))).isEmpty();
+		
+		CompactCatalog catalog = new CompactCatalog();
+		catalog.put(new Book("B1212", "History of Amazon Valley", "Ross Suarez", 0, 2));
+		Path file = write(catalog, 1);
+		try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+			raw.seek(4);
+			raw.writeInt(99);
+		}
+		assertThat(MappedCatalog.open(file)).isEmpty();
+		
+		Path truncated = write(catalog, 2);
+		try (RandomAccessFile raw = new RandomAccessFile(truncated.toFile(), "rw")) {
+			raw.setLength(raw.length() - 1);
+		}
+		assertThat(MappedCatalog.open(truncated)).isEmpty();
+	}
+	
+	private Path write(CompactCatalog catalog, long sequence) throws IOException {
+		Path file = directory.resolve("catalog-" + sequence + ".snapshot");
+		try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+			catalog.writeSnapshot(out, sequence);
+		}
+		return file;
+	}
+}
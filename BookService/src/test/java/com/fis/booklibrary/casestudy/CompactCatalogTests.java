@@ -0,0 +1,61 @@
+package com.fis.booklibrary.casestudy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.fis.booklibrary.casestudy.catalog.BookView;
+import com.fis.booklibrary.casestudy.catalog.CompactCatalog;
+import com.fis.booklibrary.casestudy.model.Book;
+
+class CompactCatalogTests {
+
+	@Test
+	public void storesAndUpdatesTitles() {
+		CompactCatalog catalog = new CompactCatalog();
+		catalog.put(new Book("B1212", "History of Amazon Valley", "Ross Suarez", 0, 2));
+		catalog.put(new Book("B4232", "Language Fundamentals", "H S Parkmay", 5, 5));
+		
+		BookView view = catalog.get("B1212").get();
+		assertThat(view.getBookName()).isEqualTo("History of Amazon Valley");
+		assertThat(view.getAuthor()).isEqualTo("Ross Suarez");
+		assertThat(view.getTotalCopies()).isEqualTo(2);
+		
+		//A view always reads the current values
+		catalog.updateCopiesAvailable("B1212", 1);
+		catalog.put(new Book("B1212", "History of the Amazon Valley", "Ross Suarez", 1, 3));
+		assertThat(view.getCopiesAvailable()).isEqualTo(1);
+		assertThat(view.getTotalCopies()).isEqualTo(3);
+		assertThat(view.getBookName()).isEqualTo("History of the Amazon Valley");
+		
+		assertThat(catalog.size()).isEqualTo(2);
+		assertThat(catalog.get("B9999")).isEmpty();
+		assertThat(catalog.updateCopiesAvailable("B9999", 1)).isFalse();
+	}
+	
+	@Test
+	public void growsAndDeduplicatesAuthors() {
+		CompactCatalog catalog = new CompactCatalog();
+		for (int i = 0; i < 50_000; i++) {
+			catalog.put(new Book("B" + i, "Title é " + i, "Author " + (i % 100), i % 7, 7));
+		}
+		
+		assertThat(catalog.size()).isEqualTo(50_000);
+		assertThat(catalog.authorCount()).isEqualTo(100);
+		assertThat(catalog.get("B49999").get().toBook())
+			.isEqualTo(new Book("B49999", "Title é 49999", "Author 99", 49999 % 7, 7));
+		
+		List<String> visited = new ArrayList<>();
+		catalog.forEach(book -> visited.add(book.getBookId()));
+		assertThat(visited).hasSize(50_000).startsWith("B0", "B1");
+		
+		//Still writable after releasing the spare capacity
+		catalog.trimToSize();
+		catalog.put(new Book("B50000", "Title 50000", "Author 0", 1, 1));
+		assertThat(catalog.get("B50000").get().getAuthor()).isEqualTo("Author 0");
+		assertThat(catalog.get("B0").get().getBookName()).isEqualTo("Title é 0");
+	}
+}
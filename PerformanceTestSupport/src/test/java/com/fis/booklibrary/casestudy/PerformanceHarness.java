@@ -0,0 +1,162 @@
+package com.fis.booklibrary.casestudy;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Fixed-workload measurement for the perf-regression profile.
+ * Runs a request a fixed number of times on the calling thread after a
+ * warm-up, in perf.rounds rounds, and records the median over the rounds of
+ * throughput, p50/p99 latency and bytes allocated per request by that thread.
+ * Results are compared against the committed baseline (perf.baseline), a
+ * metric worse by more than its threshold (a fraction) is a regression:
+ * perf.threshold for throughput and p50, perf.tail-threshold for p99 and
+ * perf.alloc-threshold for allocation, which varies far less than timings.
+ * With perf.update-baseline=true the results replace the baseline instead,
+ * otherwise a missing baseline file or endpoint fails the comparison.
+ * Shared by the services, each compiles it with its own tests.
+ */
+class PerformanceHarness {
+
+	private final Path baselineFile = Path.of(System.getProperty("perf.baseline", "src/test/resources/perf-baseline.properties"));
+	private final Path resultsFile = Path.of(System.getProperty("perf.results", "target/perf-results.properties"));
+	private final double threshold = Double.parseDouble(System.getProperty("perf.threshold", "0.50"));
+	private final double tailThreshold = Double.parseDouble(System.getProperty("perf.tail-threshold", "1.0"));
+	private final double allocThreshold = Double.parseDouble(System.getProperty("perf.alloc-threshold", "0.10"));
+	private final boolean updateBaseline = Boolean.getBoolean("perf.update-baseline");
+	private final int rounds = Integer.getInteger("perf.rounds", 3);
+
+	private final com.sun.management.ThreadMXBean threads =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+	private final List<Result> results = new ArrayList<>();
+
+	Result measure(String endpoint, int warmup, int iterations, Request request) throws Exception {
+		for (int i = 0; i < warmup; i++) {
+			request.perform(i);
+		}
+		List<Result> roundResults = new ArrayList<>();
+		for (int round = 0; round < rounds; round++) {
+			roundResults.add(round(endpoint, iterations, warmup + round * iterations, request));
+		}
+		// Median of the rounds per metric, so one disturbed round does not decide
+		Result result = new Result(endpoint,
+				median(roundResults.stream().mapToDouble(Result::throughput).toArray()),
+				median(roundResults.stream().mapToDouble(Result::p50Micros).toArray()),
+				median(roundResults.stream().mapToDouble(Result::p99Micros).toArray()),
+				median(roundResults.stream().mapToDouble(Result::allocatedBytesPerOp).toArray()));
+		results.add(result);
+		return result;
+	}
+
+	private Result round(String endpoint, int iterations, int firstIteration, Request request) throws Exception {
+		long[] nanos = new long[iterations];
+		long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+		long started = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			long requestStarted = System.nanoTime();
+			request.perform(firstIteration + i);
+			nanos[i] = System.nanoTime() - requestStarted;
+		}
+		long elapsed = System.nanoTime() - started;
+		long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+		Arrays.sort(nanos);
+		return new Result(endpoint, iterations * 1e9 / elapsed, percentile(nanos, 0.50) / 1e3,
+				percentile(nanos, 0.99) / 1e3, (double) allocated / iterations);
+	}
+
+	/**
+	 * Print and save the results, then either record them as the new baseline
+	 * or compare them with it
+	 * @return one line per regressed metric, empty if none
+	 */
+	List<String> compareWithBaseline() throws IOException {
+		System.out.println();
+		System.out.println(String.format("%-24s %14s %12s %12s %16s", "endpoint", "ops/s", "p50 us", "p99 us", "alloc B/op"));
+		for (Result result : results) {
+			System.out.println(String.format("%-24s %14.1f %12.1f %12.1f %16.0f", result.endpoint, result.throughput,
+					result.p50Micros, result.p99Micros, result.allocatedBytesPerOp));
+		}
+		write(resultsFile, "Results of the last perf-regression run");
+		if (updateBaseline) {
+			write(baselineFile, "Baseline of the perf-regression profile, re-record with -Dperf.update-baseline=true");
+			System.out.println("Baseline written to " + baselineFile);
+			return List.of();
+		}
+
+		if (!Files.exists(baselineFile)) {
+			return List.of("No baseline " + baselineFile + ", record one with -Dperf.update-baseline=true");
+		}
+		Properties baseline = new Properties();
+		try (Reader reader = Files.newBufferedReader(baselineFile)) {
+			baseline.load(reader);
+		}
+		List<String> regressions = new ArrayList<>();
+		for (Result result : results) {
+			if (!baseline.containsKey(result.endpoint + ".throughput")) {
+				regressions.add("No baseline for " + result.endpoint + ", record one with -Dperf.update-baseline=true");
+				continue;
+			}
+			lowerIsWorse(regressions, result.endpoint + ".throughput", result.throughput, baseline, threshold);
+			higherIsWorse(regressions, result.endpoint + ".p50-micros", result.p50Micros, baseline, threshold);
+			higherIsWorse(regressions, result.endpoint + ".p99-micros", result.p99Micros, baseline, tailThreshold);
+			higherIsWorse(regressions, result.endpoint + ".alloc-bytes-per-op", result.allocatedBytesPerOp, baseline,
+					allocThreshold);
+		}
+		return regressions;
+	}
+
+	private void lowerIsWorse(List<String> regressions, String metric, double value, Properties baseline,
+			double threshold) {
+		double expected = Double.parseDouble(baseline.getProperty(metric));
+		if (value < expected * (1 - threshold)) {
+			regressions.add(String.format("%s %.1f below baseline %.1f", metric, value, expected));
+		}
+	}
+
+	private void higherIsWorse(List<String> regressions, String metric, double value, Properties baseline,
+			double threshold) {
+		double expected = Double.parseDouble(baseline.getProperty(metric));
+		if (value > expected * (1 + threshold)) {
+			regressions.add(String.format("%s %.1f above baseline %.1f", metric, value, expected));
+		}
+	}
+
+	private void write(Path file, String comment) throws IOException {
+		List<String> lines = new ArrayList<>();
+		lines.add("# " + comment);
+		for (Result result : results) {
+			lines.add(String.format(Locale.ROOT, "%s.throughput=%.1f", result.endpoint, result.throughput));
+			lines.add(String.format(Locale.ROOT, "%s.p50-micros=%.1f", result.endpoint, result.p50Micros));
+			lines.add(String.format(Locale.ROOT, "%s.p99-micros=%.1f", result.endpoint, result.p99Micros));
+			lines.add(String.format(Locale.ROOT, "%s.alloc-bytes-per-op=%.0f", result.endpoint, result.allocatedBytesPerOp));
+		}
+		Files.createDirectories(file.toAbsolutePath().getParent());
+		Files.write(file, lines);
+	}
+
+	private static double median(double[] values) {
+		Arrays.sort(values);
+		return values[values.length / 2];
+	}
+
+	private static long percentile(long[] sorted, double percentile) {
+		return sorted[Math.max(0, (int) Math.ceil(percentile * sorted.length) - 1)];
+	}
+
+	@FunctionalInterface
+	interface Request {
+		void perform(int iteration) throws Exception;
+	}
+
+	record Result(String endpoint, double throughput, double p50Micros, double p99Micros, double allocatedBytesPerOp) {
+	}
+}
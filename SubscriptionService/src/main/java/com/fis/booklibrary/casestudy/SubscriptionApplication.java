@@ -7,16 +7,21 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 
+import com.fis.booklibrary.casestudy.config.DegradedModeProperties;
 import com.fis.booklibrary.casestudy.model.Subscription;
 import com.fis.booklibrary.casestudy.repository.SubscriptionRepository;
 
 @SpringBootApplication
 @EnableDiscoveryClient
+@EnableScheduling
+@EnableConfigurationProperties(DegradedModeProperties.class)
 public class SubscriptionApplication implements CommandLineRunner {
 
 	@Autowired
@@ -0,0 +1,40 @@
+package com.fis.booklibrary.casestudy.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Settings for checkouts decided from last-known availability while the
+ * book-service circuit breaker is open (booklibrary.degraded.*).
+ */
+@ConfigurationProperties(prefix = "booklibrary.degraded")
+@Getter
+@Setter
+public class DegradedModeProperties {
+
+	/** Decide checkouts from last-known availability when Book Service is unavailable */
+	private boolean enabled = true;
+
+	/** Availability observed longer ago than this is not trusted */
+	private long maxAgeSeconds = 300;
+
+	/** Copies always left untouched per title while degraded */
+	private int defaultMargin = 1;
+
+	/** Share of a title's total copies left untouched while degraded, when above the default margin */
+	private double marginRatio = 0.2;
+
+	/** Margins of individual titles by bookId, replacing the computed margin */
+	private Map<String, Integer> titleMargins = new HashMap<>();
+
+	/** Titles whose last-known availability is kept */
+	private int maxTitles = 10000;
+
+	/** How often pending provisional changes are retried once the breaker is closed */
+	private long replayIntervalMs = 30000;
+}
@@ -0,0 +1,34 @@
+package com.fis.booklibrary.casestudy.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import com.fis.booklibrary.casestudy.model.ReconciliationReport;
+import com.fis.booklibrary.casestudy.service.InventoryReconciliationService;
+
+/**
+ * Actuator endpoint for inventory reconciliation.
+ * GET /actuator/reconciliation returns the last completed pass,
+ * POST /actuator/reconciliation runs the next increment immediately.
+ */
+@Component
+@Endpoint(id = "reconciliation")
+public class ReconciliationEndpoint {
+
+	@Autowired
+	private InventoryReconciliationService reconciliationService;
+
+	@ReadOperation
+	public ReconciliationReport lastReport() {
+		return reconciliationService.getLastReport();
+	}
+
+	@WriteOperation
+	public ReconciliationReport reconcile() {
+		reconciliationService.reconcileIncrement();
+		return reconciliationService.getLastReport();
+	}
+}
@@ -0,0 +1,90 @@
+package com.fis.booklibrary.casestudy.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.fis.booklibrary.casestudy.model.Reservation;
+import com.fis.booklibrary.casestudy.service.ReservationService;
+
+/**
+ * REST Controller for the waitlist of unavailable books.
+ * Holds are created by POST /subscriptions when no copy is available.
+ */
+@RestController
+@RequestMapping(value = "/reservations", produces = MediaType.APPLICATION_JSON_VALUE)
+public class ReservationController {
+
+	@Autowired
+	private ReservationService reservationService;
+
+	/**
+	 * GET: Retrieve a reservation with its current queue position
+	 * HTTP Method: GET (safe, idempotent)
+	 * Status Codes: 200 OK, 404 NOT FOUND
+	 * @param id unique reservation identifier
+	 * @return Reservation details or 404 error
+	 */
+	@GetMapping("/{id}")
+	public ResponseEntity<Reservation> getReservation(@PathVariable("id") Long id) {
+		Reservation reservation = reservationService.getReservation(id)
+			.orElseThrow(() -> notFound(id));
+		return ResponseEntity.ok(reservation);
+	}
+
+	/**
+	 * GET: Long poll until the reservation is fulfilled or cancelled
+	 * HTTP Method: GET (safe, idempotent)
+	 * Status Codes: 200 OK, 404 NOT FOUND
+	 * Notes: Answers as soon as the hold leaves the waitlist, or with the
+	 * still waiting reservation once the timeout expires
+	 * @param id unique reservation identifier
+	 * @param timeoutMs how long to wait for a change
+	 * @return Reservation in its latest state
+	 */
+	@GetMapping("/{id}/await")
+	public DeferredResult<ResponseEntity<Reservation>> awaitReservation(@PathVariable("id") Long id,
+			@RequestParam(name = "timeoutMs", defaultValue = "30000") long timeoutMs) {
+		if (reservationService.getReservation(id).isEmpty()) {
+			throw notFound(id);
+		}
+		return reservationService.awaitReservation(id, timeoutMs);
+	}
+
+	/**
+	 * DELETE: Cancel a waiting reservation
+	 * HTTP Method: DELETE (idempotent)
+	 * Status Codes: 204 NO CONTENT, 404 NOT FOUND, 409 CONFLICT
+	 * @param id unique reservation identifier
+	 * @return Empty response or error
+	 */
+	@DeleteMapping("/{id}")
+	public ResponseEntity<Void> cancelReservation(@PathVariable("id") Long id) {
+		if (reservationService.getReservation(id).isEmpty()) {
+			throw notFound(id);
+		}
+		if (!reservationService.cancel(id)) {
+			throw new ResponseStatusException(
+				HttpStatus.CONFLICT,
+				"Reservation is no longer waiting: " + id
+			);
+		}
+		return ResponseEntity.noContent().build();
+	}
+
+	private ResponseStatusException notFound(Long id) {
+		return new ResponseStatusException(
+			HttpStatus.NOT_FOUND,
+			"Reservation not found with ID: " + id
+		);
+	}
+}
@@ -1,8 +1,15 @@
 package com.fis.booklibrary.casestudy.controller;
 
+import java.net.URI;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -10,11 +17,19 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
 
+import com.fis.booklibrary.casestudy.model.BookLoanCount;
+import com.fis.booklibrary.casestudy.model.LoanStatsReport;
+import com.fis.booklibrary.casestudy.model.Reservation;
 import com.fis.booklibrary.casestudy.model.Subscription;
+import com.fis.booklibrary.casestudy.service.IdempotencyService;
+import com.fis.booklibrary.casestudy.service.LoanStatsService;
+import com.fis.booklibrary.casestudy.service.ReservationService;
 import com.fis.booklibrary.casestudy.service.SubscriptionService;
 
 /**
@@ -29,6 +44,23 @@ public class SubscriptionController {
 
 	@Autowired
 	private SubscriptionService subscriptionService;
+	
+	@Autowired
+	private ReservationService reservationService;
+	
+	@Autowired
+	private IdempotencyService idempotencyService;
+	
+	@Autowired
+	private LoanStatsService loanStatsService;
+	
+	@Value("${booklibrary.waitlist.enabled:true}")
+	private boolean waitlistEnabled;
+	
+	@Value("${booklibrary.loan-stats.max-days:3660}")
+	private long statsMaxDays;
+	
+	private static final Set<String> STATS_BUCKETS = Set.of("day", "week", "month");
 
 	/**
 	 * GET: Retrieve all subscriptions
@@ -43,6 +75,69 @@ public class SubscriptionController {
 		return ResponseEntity.ok(subscriptions);
 	}
 	
+	/**
+	 * GET: Retrieve loan statistics per day, week or month
+	 * HTTP Method: GET (safe, idempotent)
+	 * Status Codes: 200 OK, 400 BAD REQUEST
+	 * Notes: Read from rollups maintained as subscriptions are added, not from the history
+	 * @param from first day, defaults to 29 days before to
+	 * @param to last day, defaults to today
+	 * @param bucket day, week or month
+	 * @param bookId optional, statistics of one book
+	 * @param subscriberName optional, statistics of one subscriber
+	 * @return Loans, returns and average loan duration in total and per period
+	 */
+	@GetMapping("/stats")
+	public ResponseEntity<LoanStatsReport> getLoanStats(
+			@RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+			@RequestParam(name = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+			@RequestParam(name = "bucket", defaultValue = "day") String bucket,
+			@RequestParam(name = "bookId", required = false) String bookId,
+			@RequestParam(name = "subscriberName", required = false) String subscriberName) {
+		if (!STATS_BUCKETS.contains(bucket)) {
+			throw new ResponseStatusException(
+				HttpStatus.BAD_REQUEST,
+				"Invalid request: bucket must be one of day, week or month"
+			);
+		}
+		if (bookId != null && subscriberName != null) {
+			throw new ResponseStatusException(
+				HttpStatus.BAD_REQUEST,
+				"Invalid request: filter on either bookId or subscriberName"
+			);
+		}
+		LocalDate last = to != null ? to : LocalDate.now();
+		LocalDate first = from != null ? from : last.minusDays(29);
+		validateStatsRange(first, last);
+		return ResponseEntity.ok(loanStatsService.getReport(first, last, bucket, bookId, subscriberName));
+	}
+	
+	/**
+	 * GET: Retrieve the most loaned books
+	 * HTTP Method: GET (safe, idempotent)
+	 * Status Codes: 200 OK, 400 BAD REQUEST
+	 * @param from first day, defaults to 29 days before to
+	 * @param to last day, defaults to today
+	 * @param limit number of books, 1 to 1000
+	 * @return Books with their loan count, most loaned first
+	 */
+	@GetMapping("/stats/books")
+	public ResponseEntity<List<BookLoanCount>> getMostLoanedBooks(
+			@RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+			@RequestParam(name = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+			@RequestParam(name = "limit", defaultValue = "10") int limit) {
+		if (limit < 1 || limit > 1000) {
+			throw new ResponseStatusException(
+				HttpStatus.BAD_REQUEST,
+				"Invalid request: limit must be between 1 and 1000"
+			);
+		}
+		LocalDate last = to != null ? to : LocalDate.now();
+		LocalDate first = from != null ? from : last.minusDays(29);
+		validateStatsRange(first, last);
+		return ResponseEntity.ok(loanStatsService.getMostLoanedBooks(first, last, limit));
+	}
+	
 	/**
 	 * GET: Retrieve a specific subscription by ID
 	 * HTTP Method: GET (safe, idempotent)
@@ -63,15 +158,34 @@ public class SubscriptionController {
 	/**
 	 * POST: Create a new subscription
 	 * HTTP Method: POST (creates new resource, non-idempotent)
-	 * Status Codes: 201 CREATED, 400 BAD REQUEST, 422 UNPROCESSABLE ENTITY
-	 * Notes: Circuit breaker protects Book Service call with graceful fallback
+	 * Status Codes: 201 CREATED, 202 ACCEPTED, 400 BAD REQUEST, 422 UNPROCESSABLE ENTITY, 503 SERVICE UNAVAILABLE
+	 * Notes: Circuit breaker protects Book Service call with graceful fallback.
+	 * While it is open checkouts are decided from last-known availability and
+	 * replayed to Book Service once it recovers, or refused with 503 when that
+	 * is unknown, stale or would drop below the title's safety margin.
+	 * When no copy is available a hold is placed on the waitlist (202 with the
+	 * reservation and its Location). A return hands the copy to the oldest hold
+	 * directly, Book Service copies only change when nobody is waiting.
+	 * A retry carrying the same Idempotency-Key gets the recorded response back
+	 * without calling Book Service again.
 	 * @param subscription subscription details to create
-	 * @return Created subscription with 201 status code or error
+	 * @param idempotencyKey optional client generated key identifying the request
+	 * @return Created subscription with 201 status code, reservation with 202 or error
 	 * @throws ResponseStatusException with 400 if validation fails
-	 * @throws ResponseStatusException with 422 if book copies unavailable
+	 * @throws ResponseStatusException with 409 if a request with the same key is in progress
+	 * @throws ResponseStatusException with 422 if book copies unavailable and the waitlist is disabled
+	 * @throws ResponseStatusException with 503 if Book Service is down and the change cannot be decided without it
 	 */
 	@PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
-	public ResponseEntity<Subscription> createSubscription(@RequestBody Subscription subscription) {
+	public ResponseEntity<?> createSubscription(@RequestBody Subscription subscription,
+			@RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey) {
+		if (idempotencyKey == null || idempotencyKey.isBlank()) {
+			return processSubscription(subscription);
+		}
+		return idempotencyService.execute(idempotencyKey, subscription, () -> processSubscription(subscription));
+	}
+	
+	private ResponseEntity<?> processSubscription(Subscription subscription) {
 		
 		// Validation: Check required fields
 		if (subscription == null) {
@@ -102,21 +216,57 @@ public class SubscriptionController {
 			);
 		}
 		
+		// A returned copy goes to the oldest hold on the book first, without passing through stock
+		if (subscription.getDateReturned() != null) {
+			Optional<Subscription> handedOver = reservationService.handOverReturnedCopy(subscription);
+			if (handedOver.isPresent()) {
+				return ResponseEntity.status(HttpStatus.CREATED).body(handedOver.get());
+			}
+		}
+		
 		// Check book availability (circuit breaker protected)
 		try {
 			ResponseEntity<String> availabilityCheck = subscriptionService.updateAvailableCopies(subscription);
 			if (availabilityCheck.getStatusCode() == HttpStatus.UNPROCESSABLE_ENTITY) {
+				if (waitlistEnabled) {
+					// Queue the subscriber instead of rejecting, so the client stops retrying
+					Reservation reservation = reservationService.placeHold(subscription);
+					return ResponseEntity.accepted()
+						.location(URI.create("/reservations/" + reservation.getId()))
+						.body(reservation);
+				}
 				throw new ResponseStatusException(
 					HttpStatus.UNPROCESSABLE_ENTITY,
 					"Book copies are not available for subscription"
 				);
 			}
+			if (!availabilityCheck.getStatusCode().is2xxSuccessful()) {
+				// Book Service is down and the change could not be decided safely without it
+				throw new ResponseStatusException(
+					availabilityCheck.getStatusCode(),
+					"Book service is temporarily unavailable, the subscription was not created"
+				);
+			}
 		} catch (ResponseStatusException e) {
 			throw e;
 		}
 		
 		// Create subscription and return 201 CREATED
 		Subscription createdSubscription = subscriptionService.addSubscription(subscription);
+		
+		// A hold placed while the returned copy went back to stock
+		if (createdSubscription.getDateReturned() != null) {
+			reservationService.fulfilNext(createdSubscription.getBookId());
+		}
 		return ResponseEntity.status(HttpStatus.CREATED).body(createdSubscription);
 	}
+	
+	private void validateStatsRange(LocalDate from, LocalDate to) {
+		if (from.isAfter(to) || ChronoUnit.DAYS.between(from, to) >= statsMaxDays) {
+			throw new ResponseStatusException(
+				HttpStatus.BAD_REQUEST,
+				"Invalid request: from must not be after to and the range is limited to " + statsMaxDays + " days"
+			);
+		}
+	}
 }
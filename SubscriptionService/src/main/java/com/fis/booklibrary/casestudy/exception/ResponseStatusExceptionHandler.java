@@ -7,7 +7,6 @@ import java.util.Map;
 import jakarta.servlet.http.HttpServletRequest;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
@@ -27,14 +26,19 @@ public class ResponseStatusExceptionHandler extends ResponseEntityExceptionHandl
 	
 	private String message = "Book copies not available for subscription";
 	
+	/**
+	 * Answer with the status and reason of the exception, so clients can tell
+	 * a request in progress (409) or a missing resource (404) from unavailable
+	 * copies (422)
+	 */
 	@ExceptionHandler({ResponseStatusException.class})
 	public ResponseEntity<Object> handleException(ResponseStatusException ex) {
 		Map<String, Object> errorAttributes = new HashMap<>();
 		errorAttributes.put(TIMESTAMP, new Date());
 		errorAttributes.put(PATH, request.getRequestURI());
-		errorAttributes.put(STATUS, 422);
-		errorAttributes.put(MESSAGE, message);
-		return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(errorAttributes);		
+		errorAttributes.put(STATUS, ex.getStatusCode().value());
+		errorAttributes.put(MESSAGE, ex.getReason() != null ? ex.getReason() : message);
+		return ResponseEntity.status(ex.getStatusCode()).body(errorAttributes);		
 	}
 	
 }
@@ -0,0 +1,18 @@
+package com.fis.booklibrary.casestudy.exception;
+
+/**
+ * Call to Book Service failed after the request was sent, so the change
+ * may or may not have been applied
+ */
+public class UncertainUpdateException extends RuntimeException{
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 1L;
+
+	public UncertainUpdateException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+}
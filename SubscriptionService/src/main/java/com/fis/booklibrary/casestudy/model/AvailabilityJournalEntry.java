@@ -0,0 +1,42 @@
+package com.fis.booklibrary.casestudy.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Change of available copies accepted while Book Service was unavailable,
+ * -1 for a checkout and +1 for a return. Kept until replayed to Book Service.
+ */
+@Entity
+@Table(name="AVAILABILITY_JOURNAL", indexes = @Index(name="IDX_AVAILABILITY_JOURNAL_BOOK_ID", columnList="BOOK_ID"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AvailabilityJournalEntry {
+	
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@Column(name="ENTRY_ID")
+	private Long id;
+	
+	@Column(name="BOOK_ID")
+	private String bookId;
+	
+	@Column(name="DELTA")
+	private int delta;
+	
+	@Column(name="SUBSCRIBER_NAME")
+	private String subscriberName;
+	
+	@Column(name="CREATED_AT")
+	private long createdAt;
+}
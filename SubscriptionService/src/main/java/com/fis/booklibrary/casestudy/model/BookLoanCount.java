@@ -0,0 +1,20 @@
+package com.fis.booklibrary.casestudy.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Number of loans of a book over a range of days
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class BookLoanCount {
+	
+	private String bookId;
+	
+	private long loans;
+}
@@ -0,0 +1,44 @@
+package com.fis.booklibrary.casestudy.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Response recorded for an Idempotency-Key. STATUS_CODE stays null while
+ * the first request carrying the key is still being processed.
+ */
+@Entity
+@Table(name="IDEMPOTENCY_RECORD")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class IdempotencyRecord {
+	
+	@Id
+	@Column(name="IDEMPOTENCY_KEY")
+	private String idempotencyKey;
+	
+	@Column(name="REQUEST_HASH")
+	private String requestHash;
+	
+	@Column(name="STATUS_CODE")
+	private Integer statusCode;
+	
+	@Lob
+	@Column(name="RESPONSE_BODY")
+	private String responseBody;
+	
+	@Column(name="CREATED_AT")
+	private long createdAt;
+}
@@ -0,0 +1,29 @@
+package com.fis.booklibrary.casestudy.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Book whose available copies do not match TOTAL_COPIES minus its open loans.
+ * A book unknown to Book Service (open loans only) has null copy counts.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class InventoryDiscrepancy {
+	
+	private String bookId;
+	
+	private Integer totalCopies;
+	
+	private Integer copiesAvailable;
+	
+	private long openLoans;
+	
+	private Long expectedAvailable;
+	
+	private boolean corrected;
+}
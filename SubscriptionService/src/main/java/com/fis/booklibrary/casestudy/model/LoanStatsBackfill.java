@@ -0,0 +1,35 @@
+package com.fis.booklibrary.casestudy.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Progress of building the loan statistics from the subscriptions that
+ * existed before them, a single row. Subscriptions up to UP_TO_SUBSCRIPTION_ID
+ * are counted by the backfill, LAST_SUBSCRIPTION_ID is the last one it applied.
+ */
+@Entity
+@Table(name = "LOAN_STATS_BACKFILL")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanStatsBackfill {
+
+	public static final int ID = 1;
+
+	@Id
+	@Column(name = "ID")
+	private int id;
+
+	@Column(name = "LAST_SUBSCRIPTION_ID")
+	private long lastSubscriptionId;
+
+	@Column(name = "UP_TO_SUBSCRIPTION_ID")
+	private long upToSubscriptionId;
+}
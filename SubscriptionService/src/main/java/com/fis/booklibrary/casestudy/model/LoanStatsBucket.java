@@ -0,0 +1,55 @@
+package com.fis.booklibrary.casestudy.model;
+
+import java.time.LocalDate;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Loan counters of one day, for all subscriptions, one book or one subscriber.
+ * Incremented as subscriptions are added, so reports read one row per day
+ * instead of the subscription history. Durations are summed in days over the
+ * returns whose subscribe and return dates could both be read.
+ */
+@Entity
+@Table(name = "LOAN_STATS_BUCKET")
+@IdClass(LoanStatsBucketKey.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanStatsBucket {
+
+	@Id
+	@Enumerated(EnumType.STRING)
+	@Column(name = "DIMENSION", length = 16)
+	private LoanStatsDimension dimension;
+
+	@Id
+	@Column(name = "DIMENSION_KEY")
+	private String dimensionKey;
+
+	@Id
+	@Column(name = "BUCKET_DATE")
+	private LocalDate bucketDate;
+
+	@Column(name = "LOANS")
+	private long loans;
+
+	@Column(name = "RETURNS")
+	private long returns;
+
+	@Column(name = "TIMED_RETURNS")
+	private long timedReturns;
+
+	@Column(name = "LOAN_DAYS")
+	private long loanDays;
+}
@@ -0,0 +1,22 @@
+package com.fis.booklibrary.casestudy.model;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanStatsBucketKey implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private LoanStatsDimension dimension;
+
+	private String dimensionKey;
+
+	private LocalDate bucketDate;
+}
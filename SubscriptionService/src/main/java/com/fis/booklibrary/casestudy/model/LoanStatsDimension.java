@@ -0,0 +1,8 @@
+package com.fis.booklibrary.casestudy.model;
+
+/**
+ * What a loan statistics bucket is kept for
+ */
+public enum LoanStatsDimension {
+	ALL, BOOK, SUBSCRIBER
+}
@@ -0,0 +1,30 @@
+package com.fis.booklibrary.casestudy.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Subscription added but not yet counted in the loan statistics. Written in
+ * the transaction adding the subscription, deleted in the one counting it.
+ */
+@Entity
+@Table(name = "LOAN_STATS_PENDING", indexes = @Index(name = "IDX_LOAN_STATS_PENDING_CREATED_AT", columnList = "CREATED_AT"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanStatsPending {
+
+	@Id
+	@Column(name = "SUBSCRIPTION_ID")
+	private Long subscriptionId;
+
+	@Column(name = "CREATED_AT")
+	private long createdAt;
+}
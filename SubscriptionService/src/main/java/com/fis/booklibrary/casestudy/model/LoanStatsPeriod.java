@@ -0,0 +1,26 @@
+package com.fis.booklibrary.casestudy.model;
+
+import java.time.LocalDate;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Loans and returns of one day, week or month
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class LoanStatsPeriod {
+	
+	private LocalDate start;
+	
+	private long loans;
+	
+	private long returns;
+	
+	private Double averageLoanDays;
+}
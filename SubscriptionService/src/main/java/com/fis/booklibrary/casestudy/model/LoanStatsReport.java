@@ -0,0 +1,38 @@
+package com.fis.booklibrary.casestudy.model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Loan statistics between two dates, per period and in total.
+ * Covers all subscriptions unless bookId or subscriberName is set.
+ * Periods without loans or returns are left out.
+ */
+@NoArgsConstructor
+@Getter
+@Setter
+public class LoanStatsReport {
+	
+	private LocalDate from;
+	
+	private LocalDate to;
+	
+	private String bucket;
+	
+	private String bookId;
+	
+	private String subscriberName;
+	
+	private long loans;
+	
+	private long returns;
+	
+	private Double averageLoanDays;
+	
+	private List<LoanStatsPeriod> periods = new ArrayList<>();
+}
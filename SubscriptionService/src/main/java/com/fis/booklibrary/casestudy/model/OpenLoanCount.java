@@ -0,0 +1,20 @@
+package com.fis.booklibrary.casestudy.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Number of subscriptions of a book that have not been returned yet
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class OpenLoanCount {
+	
+	private String bookId;
+	
+	private long openLoans;
+}
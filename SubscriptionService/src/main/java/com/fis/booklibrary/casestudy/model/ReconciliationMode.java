@@ -0,0 +1,9 @@
+package com.fis.booklibrary.casestudy.model;
+
+/**
+ * What inventory reconciliation does with a drift it found.
+ * REPORT only lists it, CORRECT also writes back a drift confirmed by the next pass.
+ */
+public enum ReconciliationMode {
+	REPORT, CORRECT
+}
@@ -0,0 +1,31 @@
+package com.fis.booklibrary.casestudy.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Outcome of one full reconciliation pass over the catalog.
+ * Only the first booklibrary.reconciliation.max-reported discrepancies are
+ * listed, discrepancyCount covers all of them.
+ */
+@NoArgsConstructor
+@Getter
+@Setter
+public class ReconciliationReport {
+	
+	private long startedAt;
+	
+	private Long completedAt;
+	
+	private long booksChecked;
+	
+	private long discrepancyCount;
+	
+	private long corrected;
+	
+	private List<InventoryDiscrepancy> discrepancies = new ArrayList<>();
+}
@@ -0,0 +1,57 @@
+package com.fis.booklibrary.casestudy.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Transient;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class Reservation {
+	
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@Column(name="RESERVATION_ID")
+	private Long id;
+	
+	@Column(name="SUBSCRIBER_NAME")
+	private String subscriberName;
+	
+	@Column(name="BOOK_ID")
+	private String bookId;
+	
+	@Column(name="DATE_RESERVED")
+	private String dateReserved;
+	
+	@Enumerated(EnumType.STRING)
+	@Column(name="STATUS")
+	private ReservationStatus status;
+	
+	@Column(name="SUBSCRIPTION_ID")
+	private Long subscriptionId;
+	
+	/** When the hold was claimed for fulfilment, only set while fulfilling */
+	@JsonIgnore
+	@Column(name="FULFILLING_SINCE")
+	private Long fulfillingSince;
+	
+	/** Position in the book's waitlist (1 = next in line), only set while waiting */
+	@Transient
+	private Integer queuePosition;
+}
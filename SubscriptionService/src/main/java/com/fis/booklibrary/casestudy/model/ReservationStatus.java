@@ -0,0 +1,13 @@
+package com.fis.booklibrary.casestudy.model;
+
+/**
+ * Lifecycle of a hold placed on an unavailable book
+ */
+public enum ReservationStatus {
+	WAITING,
+	FULFILLING,
+	/** Copy taken from Book Service, the hold's subscription not saved yet */
+	COPY_TAKEN,
+	FULFILLED,
+	CANCELLED
+}
@@ -0,0 +1,16 @@
+package com.fis.booklibrary.casestudy.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import com.fis.booklibrary.casestudy.model.AvailabilityJournalEntry;
+
+public interface AvailabilityJournalRepository extends JpaRepository<AvailabilityJournalEntry, Long> {
+
+	List<AvailabilityJournalEntry> findByBookIdOrderByIdAsc(String bookId);
+
+	@Query("SELECT DISTINCT j.bookId FROM AvailabilityJournalEntry j")
+	List<String> findJournaledBookIds();
+}
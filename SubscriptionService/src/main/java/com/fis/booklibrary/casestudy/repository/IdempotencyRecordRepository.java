@@ -0,0 +1,40 @@
+package com.fis.booklibrary.casestudy.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fis.booklibrary.casestudy.model.IdempotencyRecord;
+
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+	/**
+	 * Reserve a key for a request in progress. A plain INSERT, unlike save(),
+	 * fails with a duplicate key when another request reserved it first
+	 * @throws org.springframework.dao.DataIntegrityViolationException if the key exists
+	 */
+	@Transactional
+	@Modifying
+	@Query(value = "INSERT INTO IDEMPOTENCY_RECORD (IDEMPOTENCY_KEY, REQUEST_HASH, CREATED_AT) "
+			+ "VALUES (:key, :requestHash, :createdAt)", nativeQuery = true)
+	int insert(@Param("key") String key, @Param("requestHash") String requestHash, @Param("createdAt") long createdAt);
+
+	/**
+	 * Reserve a stale or expired key again, only if it is unchanged since it was read,
+	 * so that of two concurrent requests only one takes it over
+	 * @return 1 if the key was taken over, 0 otherwise
+	 */
+	@Transactional
+	@Modifying(clearAutomatically = true)
+	@Query("UPDATE IdempotencyRecord r SET r.requestHash = :requestHash, r.statusCode = NULL, r.responseBody = NULL, "
+			+ "r.createdAt = :now WHERE r.idempotencyKey = :key AND r.createdAt = :observedCreatedAt")
+	int takeOver(@Param("key") String key, @Param("observedCreatedAt") long observedCreatedAt,
+			@Param("requestHash") String requestHash, @Param("now") long now);
+
+	@Transactional
+	@Modifying
+	@Query("DELETE FROM IdempotencyRecord r WHERE r.createdAt < :cutoff")
+	int deleteCreatedBefore(@Param("cutoff") long cutoff);
+}
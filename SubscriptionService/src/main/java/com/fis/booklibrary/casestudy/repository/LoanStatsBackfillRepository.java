@@ -0,0 +1,30 @@
+package com.fis.booklibrary.casestudy.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.fis.booklibrary.casestudy.model.LoanStatsBackfill;
+
+public interface LoanStatsBackfillRepository extends JpaRepository<LoanStatsBackfill, Integer> {
+
+	/**
+	 * Start the backfill. A plain INSERT, so that of two instances starting
+	 * together only one records it
+	 * @throws org.springframework.dao.DataIntegrityViolationException if it was recorded
+	 */
+	@Modifying
+	@Query(value = "INSERT INTO LOAN_STATS_BACKFILL (ID, LAST_SUBSCRIPTION_ID, UP_TO_SUBSCRIPTION_ID) "
+			+ "VALUES (" + LoanStatsBackfill.ID + ", :lastSubscriptionId, :upToSubscriptionId)", nativeQuery = true)
+	int insert(@Param("lastSubscriptionId") long lastSubscriptionId, @Param("upToSubscriptionId") long upToSubscriptionId);
+
+	/**
+	 * Move the high-water mark past a page, only if no other instance applied it
+	 * @return 1 if the page is this caller's to apply, 0 otherwise
+	 */
+	@Modifying(clearAutomatically = true)
+	@Query("UPDATE LoanStatsBackfill b SET b.lastSubscriptionId = :last "
+			+ "WHERE b.id = " + LoanStatsBackfill.ID + " AND b.lastSubscriptionId = :after")
+	int advance(@Param("after") long after, @Param("last") long last);
+}
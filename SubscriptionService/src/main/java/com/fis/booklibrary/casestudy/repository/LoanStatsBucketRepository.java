@@ -0,0 +1,42 @@
+package com.fis.booklibrary.casestudy.repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.fis.booklibrary.casestudy.model.BookLoanCount;
+import com.fis.booklibrary.casestudy.model.LoanStatsBucket;
+import com.fis.booklibrary.casestudy.model.LoanStatsBucketKey;
+import com.fis.booklibrary.casestudy.model.LoanStatsDimension;
+
+public interface LoanStatsBucketRepository extends JpaRepository<LoanStatsBucket, LoanStatsBucketKey> {
+
+	/**
+	 * Add to the counters of a bucket, creating it if needed, in one statement
+	 */
+	@Modifying
+	@Query(value = "MERGE INTO LOAN_STATS_BUCKET b "
+			+ "USING (VALUES (:dimension, :dimensionKey, :bucketDate)) AS v(DIMENSION, DIMENSION_KEY, BUCKET_DATE) "
+			+ "ON b.DIMENSION = v.DIMENSION AND b.DIMENSION_KEY = v.DIMENSION_KEY AND b.BUCKET_DATE = v.BUCKET_DATE "
+			+ "WHEN MATCHED THEN UPDATE SET LOANS = b.LOANS + :loans, RETURNS = b.RETURNS + :returns, "
+			+ "TIMED_RETURNS = b.TIMED_RETURNS + :timedReturns, LOAN_DAYS = b.LOAN_DAYS + :loanDays "
+			+ "WHEN NOT MATCHED THEN INSERT (DIMENSION, DIMENSION_KEY, BUCKET_DATE, LOANS, RETURNS, TIMED_RETURNS, LOAN_DAYS) "
+			+ "VALUES (v.DIMENSION, v.DIMENSION_KEY, v.BUCKET_DATE, :loans, :returns, :timedReturns, :loanDays)",
+			nativeQuery = true)
+	int increment(@Param("dimension") String dimension, @Param("dimensionKey") String dimensionKey,
+			@Param("bucketDate") LocalDate bucketDate, @Param("loans") long loans, @Param("returns") long returns,
+			@Param("timedReturns") long timedReturns, @Param("loanDays") long loanDays);
+
+	List<LoanStatsBucket> findByDimensionAndDimensionKeyAndBucketDateBetweenOrderByBucketDate(
+			LoanStatsDimension dimension, String dimensionKey, LocalDate from, LocalDate to);
+
+	@Query("SELECT new com.fis.booklibrary.casestudy.model.BookLoanCount(b.dimensionKey, SUM(b.loans)) "
+			+ "FROM LoanStatsBucket b WHERE b.dimension = com.fis.booklibrary.casestudy.model.LoanStatsDimension.BOOK "
+			+ "AND b.bucketDate BETWEEN :from AND :to GROUP BY b.dimensionKey ORDER BY SUM(b.loans) DESC, b.dimensionKey")
+	List<BookLoanCount> findMostLoanedBooks(@Param("from") LocalDate from, @Param("to") LocalDate to, Pageable pageable);
+}
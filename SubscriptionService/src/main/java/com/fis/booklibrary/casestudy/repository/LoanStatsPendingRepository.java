@@ -0,0 +1,31 @@
+package com.fis.booklibrary.casestudy.repository;
+
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.fis.booklibrary.casestudy.model.LoanStatsPending;
+
+public interface LoanStatsPendingRepository extends JpaRepository<LoanStatsPending, Long> {
+
+	/**
+	 * A plain INSERT, save() would first look the new row up to merge it
+	 */
+	@Modifying
+	@Query(value = "INSERT INTO LOAN_STATS_PENDING (SUBSCRIPTION_ID, CREATED_AT) VALUES (:subscriptionId, :createdAt)",
+			nativeQuery = true)
+	int insert(@Param("subscriptionId") Long subscriptionId, @Param("createdAt") long createdAt);
+
+	/**
+	 * @return 1 if the subscription was pending, 0 if it has been counted already
+	 */
+	@Modifying
+	@Query("DELETE FROM LoanStatsPending p WHERE p.subscriptionId = :subscriptionId")
+	int deleteBySubscriptionId(@Param("subscriptionId") Long subscriptionId);
+
+	List<LoanStatsPending> findByCreatedAtLessThanOrderBySubscriptionIdAsc(long before, Pageable pageable);
+}
@@ -0,0 +1,56 @@
+package com.fis.booklibrary.casestudy.repository;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fis.booklibrary.casestudy.model.Reservation;
+import com.fis.booklibrary.casestudy.model.ReservationStatus;
+
+public interface ReservationRepository extends JpaRepository<Reservation, Long> {
+
+	Optional<Reservation> findFirstByBookIdAndStatusOrderByIdAsc(String bookId, ReservationStatus status);
+
+	long countByBookIdAndStatusAndIdLessThan(String bookId, ReservationStatus status, Long id);
+
+	List<Reservation> findByStatusAndFulfillingSinceLessThan(ReservationStatus status, long before);
+
+	@Query("SELECT DISTINCT r.bookId FROM Reservation r WHERE r.status = com.fis.booklibrary.casestudy.model.ReservationStatus.WAITING")
+	List<String> findWaitingBookIds();
+
+	/**
+	 * Move a reservation from one status to another only if it is still in the expected one,
+	 * so that concurrent releases never hand the same hold out twice
+	 * @return 1 if the transition was made, 0 otherwise
+	 */
+	@Transactional
+	@Modifying(clearAutomatically = true)
+	@Query("UPDATE Reservation r SET r.status = :to WHERE r.id = :id AND r.status = :from")
+	int transition(@Param("id") Long id, @Param("from") ReservationStatus from, @Param("to") ReservationStatus to);
+
+	/**
+	 * Claim a waiting hold for fulfilment, recording when it was claimed
+	 * @return 1 if the hold was still waiting and is now claimed, 0 otherwise
+	 */
+	@Transactional
+	@Modifying(clearAutomatically = true)
+	@Query("UPDATE Reservation r SET r.status = com.fis.booklibrary.casestudy.model.ReservationStatus.FULFILLING, "
+			+ "r.fulfillingSince = :now WHERE r.id = :id AND r.status = com.fis.booklibrary.casestudy.model.ReservationStatus.WAITING")
+	int claim(@Param("id") Long id, @Param("now") long now);
+
+	/**
+	 * Put holds claimed before the given time back on the waitlist
+	 * @return number of holds put back
+	 */
+	@Transactional
+	@Modifying(clearAutomatically = true)
+	@Query("UPDATE Reservation r SET r.status = com.fis.booklibrary.casestudy.model.ReservationStatus.WAITING, "
+			+ "r.fulfillingSince = NULL WHERE r.status = com.fis.booklibrary.casestudy.model.ReservationStatus.FULFILLING "
+			+ "AND r.fulfillingSince < :before")
+	int releaseClaimedBefore(@Param("before") long before);
+}
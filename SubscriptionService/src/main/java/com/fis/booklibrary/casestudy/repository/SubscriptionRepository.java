@@ -1,9 +1,38 @@
 package com.fis.booklibrary.casestudy.repository;
 
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import com.fis.booklibrary.casestudy.model.OpenLoanCount;
 import com.fis.booklibrary.casestudy.model.Subscription;
 
 public interface SubscriptionRepository extends JpaRepository<Subscription, Long> {
 
+	@Query("SELECT new com.fis.booklibrary.casestudy.model.OpenLoanCount(s.bookId, COUNT(s)) FROM Subscription s "
+			+ "WHERE s.dateReturned IS NULL AND s.bookId > :after GROUP BY s.bookId ORDER BY s.bookId")
+	List<OpenLoanCount> countOpenLoansAfter(@Param("after") String after, Pageable pageable);
+
+	List<Subscription> findByIdGreaterThanOrderByIdAsc(Long after, Pageable pageable);
+
+	Optional<Subscription> findFirstByBookIdAndSubscriberNameAndDateReturnedIsNullOrderByIdAsc(String bookId,
+			String subscriberName);
+
+	Optional<Subscription> findFirstByBookIdAndDateReturnedIsNullOrderByIdAsc(String bookId);
+
+	/**
+	 * Close an open loan, only if no concurrent return closed it first
+	 * @return 1 if the loan was closed, 0 otherwise
+	 */
+	@Modifying
+	@Query("UPDATE Subscription s SET s.dateReturned = :dateReturned WHERE s.id = :id AND s.dateReturned IS NULL")
+	int closeLoan(@Param("id") Long id, @Param("dateReturned") String dateReturned);
+
+	@Query("SELECT COALESCE(MAX(s.id), 0) FROM Subscription s")
+	long findMaxId();
 }
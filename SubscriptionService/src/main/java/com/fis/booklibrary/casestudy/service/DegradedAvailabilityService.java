@@ -0,0 +1,326 @@
+package com.fis.booklibrary.casestudy.service;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+
+import com.fis.booklibrary.casestudy.config.DegradedModeProperties;
+import com.fis.booklibrary.casestudy.exception.UncertainUpdateException;
+import com.fis.booklibrary.casestudy.model.AvailabilityJournalEntry;
+import com.fis.booklibrary.casestudy.model.Book;
+import com.fis.booklibrary.casestudy.model.Subscription;
+import com.fis.booklibrary.casestudy.repository.AvailabilityJournalRepository;
+
+/**
+ * Keeps checkouts going while the book-service circuit breaker is open.
+ * Every availability read from or written to Book Service is remembered per
+ * title. During an outage a checkout is accepted if the last-known copies,
+ * less the changes accepted since, stay at or above the title's safety
+ * margin, and a return is always accepted. Each accepted change is written
+ * to AVAILABILITY_JOURNAL in the transaction saving its subscription, and
+ * applied to Book Service once the breaker closes again, title by title,
+ * through the same breaker and compare-and-set. Checkouts beyond the copies
+ * Book Service has left stay in the journal until copies come back. The journal only
+ * outlives a restart when spring.datasource points at a durable database,
+ * with the default in-memory H2 changes not yet replayed are lost.
+ */
+@Lazy(false)
+@Service
+public class DegradedAvailabilityService {
+
+	private static final Logger logger = Logger.getLogger(DegradedAvailabilityService.class.getName());
+	private static final String BOOK_SERVICE_URI = "http://book-service/books/";
+	private static final String COMPARE_AND_SET_URI = BOOK_SERVICE_URI + "{bookId}?expectedAvailable={expected}";
+	private static final String CIRCUIT_BREAKER = "book-service";
+	private static final int MAX_REPLAY_ATTEMPTS = 5;
+
+	@Autowired
+	private DegradedModeProperties properties;
+
+	@Autowired
+	private AvailabilityJournalRepository availabilityJournalRepository;
+
+	@Autowired
+	private CircuitBreakerRegistry circuitBreakerRegistry;
+
+	@Autowired
+	private RestTemplate restTemplate;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private Map<String, KnownAvailability> lastKnown;
+
+	// Sum of accepted changes not yet applied to Book Service, by bookId
+	private final Map<String, Integer> pending = new ConcurrentHashMap<>();
+
+	// Accepted changes waiting for their subscription to be saved
+	private final Map<Subscription, AvailabilityJournalEntry> accepted = Collections.synchronizedMap(new IdentityHashMap<>());
+
+	private TransactionTemplate transaction;
+
+	private CircuitBreaker circuitBreaker;
+
+	private final ExecutorService replayer = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "availability-replay");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	@PostConstruct
+	public void init() {
+		lastKnown = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, KnownAvailability> eldest) {
+				return size() > properties.getMaxTitles();
+			}
+		});
+		// Changes journaled before a restart (durable datasource only) are still owed to Book Service
+		availabilityJournalRepository.findAll()
+				.forEach(entry -> pending.merge(entry.getBookId(), entry.getDelta(), Integer::sum));
+		transaction = new TransactionTemplate(transactionManager);
+		circuitBreaker = circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER);
+		circuitBreaker.getEventPublisher().onStateTransition(event -> {
+			if (event.getStateTransition().getToState() == CircuitBreaker.State.CLOSED) {
+				replayer.execute(this::replayJournal);
+			}
+		});
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		replayer.shutdownNow();
+	}
+
+	/**
+	 * Remember availability read from Book Service
+	 */
+	public void observe(Book book) {
+		lastKnown.put(book.getBookId(), new KnownAvailability(book.getCopiesAvailable(), book.getTotalCopies(),
+				System.currentTimeMillis()));
+	}
+
+	/**
+	 * Remember available copies written to Book Service
+	 */
+	public void observe(String bookId, int copiesAvailable) {
+		KnownAvailability previous = lastKnown.get(bookId);
+		lastKnown.put(bookId, new KnownAvailability(copiesAvailable, previous != null ? previous.totalCopies : copiesAvailable,
+				System.currentTimeMillis()));
+	}
+
+	/**
+	 * @return whether Book Service is down or refusing calls rather than rejecting this request,
+	 * and the change cannot have reached it
+	 */
+	public boolean isOutage(Throwable ex) {
+		for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+			if (cause instanceof HttpClientErrorException || cause instanceof UncertainUpdateException) {
+				return false;
+			}
+		}
+		return properties.isEnabled();
+	}
+
+	/**
+	 * @return last-known copies less pending changes and the safety margin, 0 if unknown or stale
+	 */
+	public int estimateAvailableCopies(String bookId) {
+		KnownAvailability known = fresh(bookId);
+		if (known == null) {
+			return 0;
+		}
+		return Math.max(0, estimate(bookId, known) - margin(bookId, known));
+	}
+
+	/**
+	 * @return whether changes accepted for the title are not yet applied to Book Service
+	 */
+	public boolean hasPending(String bookId) {
+		return pending.containsKey(bookId);
+	}
+
+	/**
+	 * Accept a checkout or a return without Book Service. The change counts
+	 * against the estimate right away and is journaled by {@link #journal}
+	 * @param subscription checkout (no dateReturned) or return
+	 * @return false if a checkout cannot be decided safely from what is known
+	 */
+	public synchronized boolean applyProvisionally(Subscription subscription) {
+		String bookId = subscription.getBookId();
+		int delta = subscription.getDateReturned() == null ? -1 : 1;
+		if (delta < 0) {
+			KnownAvailability known = fresh(bookId);
+			if (known == null || estimate(bookId, known) + delta < margin(bookId, known)) {
+				return false;
+			}
+		}
+		accepted.put(subscription, new AvailabilityJournalEntry(null, bookId, delta,
+				subscription.getSubscriberName(), System.currentTimeMillis()));
+		pending.merge(bookId, delta, Integer::sum);
+		logger.info("Book Service unavailable, provisionally applied " + delta + " to bookId: " + bookId);
+		return true;
+	}
+
+	/**
+	 * @return whether the change for the subscription was accepted without Book Service and not journaled yet
+	 */
+	public boolean isProvisional(Subscription subscription) {
+		return accepted.containsKey(subscription);
+	}
+
+	/**
+	 * Drop the change accepted for a subscription that will not be saved
+	 */
+	public void discard(Subscription subscription) {
+		AvailabilityJournalEntry entry = accepted.remove(subscription);
+		if (entry != null) {
+			withdraw(entry);
+		}
+	}
+
+	/**
+	 * Journal the change accepted for the subscription, if any, in the
+	 * transaction saving it. The change is dropped if that transaction rolls back.
+	 */
+	public void journal(Subscription subscription) {
+		AvailabilityJournalEntry entry = accepted.remove(subscription);
+		if (entry == null) {
+			return;
+		}
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCompletion(int status) {
+					if (status != STATUS_COMMITTED) {
+						withdraw(entry);
+					}
+				}
+			});
+		}
+		availabilityJournalRepository.save(entry);
+	}
+
+	private void withdraw(AvailabilityJournalEntry entry) {
+		pending.computeIfPresent(entry.getBookId(),
+				(id, sum) -> sum - entry.getDelta() == 0 ? null : sum - entry.getDelta());
+		logger.info("Subscription not saved, withdrew " + entry.getDelta() + " from bookId: " + entry.getBookId());
+	}
+
+	/**
+	 * Apply journaled changes to Book Service, stopping at the first failure
+	 * so the rest is retried on the next attempt
+	 */
+	@Scheduled(initialDelayString = "${booklibrary.degraded.replay-interval-ms:30000}",
+			fixedDelayString = "${booklibrary.degraded.replay-interval-ms:30000}")
+	public synchronized void replayJournal() {
+		if (pending.isEmpty() || circuitBreaker.getState() != CircuitBreaker.State.CLOSED) {
+			return;
+		}
+		for (String bookId : availabilityJournalRepository.findJournaledBookIds()) {
+			List<AvailabilityJournalEntry> entries = availabilityJournalRepository.findByBookIdOrderByIdAsc(bookId);
+			int delta = entries.stream().mapToInt(AvailabilityJournalEntry::getDelta).sum();
+			int applied;
+			try {
+				applied = delta == 0 ? 0 : circuitBreaker.executeSupplier(() -> apply(bookId, delta));
+			} catch (RuntimeException e) {
+				logger.warning("Replay of provisional changes paused, Book Service unavailable: " + e.getMessage());
+				return;
+			}
+			if (applied == 0 && delta != 0) {
+				continue;
+			}
+			int owed = delta - applied;
+			transaction.executeWithoutResult(status -> {
+				availabilityJournalRepository.deleteAllInBatch(entries);
+				if (owed != 0) {
+					availabilityJournalRepository.save(new AvailabilityJournalEntry(null, bookId, owed, null,
+							System.currentTimeMillis()));
+				}
+			});
+			pending.computeIfPresent(bookId, (id, sum) -> sum - applied == 0 ? null : sum - applied);
+		}
+	}
+
+	/**
+	 * Compare-and-set the change onto the copies read, reading again when a
+	 * concurrent change got there first
+	 * @return part of the change applied, short of the checkouts Book Service has no copies left for
+	 */
+	private int apply(String bookId, int delta) {
+		for (int attempt = 1; attempt <= MAX_REPLAY_ATTEMPTS; attempt++) {
+			Book book = restTemplate.getForObject(BOOK_SERVICE_URI + bookId, Book.class);
+			if (book == null) {
+				return delta;
+			}
+			observe(book);
+			int copiesAvailable = Math.max(0, book.getCopiesAvailable() + delta);
+			if (copiesAvailable != book.getCopiesAvailable() + delta) {
+				logger.warning("Provisional checkouts of bookId: " + bookId + " exceed its copies by "
+						+ -(book.getCopiesAvailable() + delta) + ", kept in the journal");
+			}
+			if (copiesAvailable == book.getCopiesAvailable()) {
+				return 0;
+			}
+			try {
+				restTemplate.put(COMPARE_AND_SET_URI, copiesAvailable, bookId, book.getCopiesAvailable());
+			} catch (HttpClientErrorException.Conflict e) {
+				continue;
+			}
+			observe(bookId, copiesAvailable);
+			logger.info("Replayed " + (copiesAvailable - book.getCopiesAvailable()) + " provisional copies to bookId: " + bookId);
+			return copiesAvailable - book.getCopiesAvailable();
+		}
+		logger.warning("Copies of bookId: " + bookId + " kept changing, replay retried later");
+		return 0;
+	}
+
+	private KnownAvailability fresh(String bookId) {
+		KnownAvailability known = lastKnown.get(bookId);
+		if (known == null || System.currentTimeMillis() - known.observedAt > TimeUnit.SECONDS.toMillis(properties.getMaxAgeSeconds())) {
+			return null;
+		}
+		return known;
+	}
+
+	private int estimate(String bookId, KnownAvailability known) {
+		return known.copiesAvailable + pending.getOrDefault(bookId, 0);
+	}
+
+	private int margin(String bookId, KnownAvailability known) {
+		Integer titleMargin = properties.getTitleMargins().get(bookId);
+		if (titleMargin != null) {
+			return titleMargin;
+		}
+		return Math.max(properties.getDefaultMargin(), (int) Math.ceil(known.totalCopies * properties.getMarginRatio()));
+	}
+
+	private record KnownAvailability(int copiesAvailable, int totalCopies, long observedAt) {
+	}
+}
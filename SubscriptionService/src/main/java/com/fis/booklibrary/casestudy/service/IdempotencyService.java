@@ -0,0 +1,208 @@
+package com.fis.booklibrary.casestudy.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+import jakarta.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fis.booklibrary.casestudy.model.IdempotencyRecord;
+import com.fis.booklibrary.casestudy.repository.IdempotencyRecordRepository;
+
+/**
+ * Deduplicates retried requests carrying the same Idempotency-Key.
+ * Completed responses are kept in a bounded in-memory LRU backed by the
+ * IDEMPOTENCY_RECORD table, which also covers restarts and other instances.
+ * Both expire after booklibrary.idempotency.ttl-seconds.
+ */
+@Lazy(false)
+@Service
+public class IdempotencyService {
+
+	private static final Logger logger = Logger.getLogger(IdempotencyService.class.getName());
+
+	public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+	@Autowired
+	private IdempotencyRecordRepository idempotencyRecordRepository;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Value("${booklibrary.idempotency.max-entries:10000}")
+	private int maxEntries;
+
+	@Value("${booklibrary.idempotency.ttl-seconds:86400}")
+	private long ttlSeconds;
+
+	@Value("${booklibrary.idempotency.in-progress-timeout-seconds:60}")
+	private long inProgressTimeoutSeconds;
+
+	private Map<String, IdempotencyRecord> completed;
+
+	@PostConstruct
+	public void init() {
+		completed = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, IdempotencyRecord> eldest) {
+				return size() > maxEntries;
+			}
+		});
+	}
+
+	/**
+	 * Run the action once per key. A retry with the same key and request gets
+	 * the recorded response back without running the action again.
+	 * @param key value of the Idempotency-Key header
+	 * @param request request body, fingerprinted to detect a reused key
+	 * @param action processing of the first request
+	 * @return response of the action, or the recorded response on a replay
+	 * @throws ResponseStatusException with 409 while the first request is in progress
+	 * @throws ResponseStatusException with 422 if the key was used for a different request
+	 */
+	public ResponseEntity<?> execute(String key, Object request, Supplier<ResponseEntity<?>> action) {
+		String requestHash = hash(request);
+		Optional<IdempotencyRecord> existing = find(key);
+		boolean reserved;
+		if (existing.isEmpty()) {
+			reserved = reserve(key, requestHash);
+		} else {
+			IdempotencyRecord record = existing.get();
+			if (!isExpired(record)) {
+				if (!record.getRequestHash().equals(requestHash)) {
+					throw new ResponseStatusException(
+						HttpStatus.UNPROCESSABLE_ENTITY,
+						"Idempotency-Key was already used for a different request"
+					);
+				}
+				if (record.getStatusCode() != null) {
+					logger.info("Replaying recorded response for Idempotency-Key: " + key);
+					return replay(record);
+				}
+				if (!isStale(record)) {
+					throw inProgress();
+				}
+			}
+			// The first request never finished (crashed instance) or the record expired,
+			// take the key over unless a concurrent request did first
+			reserved = idempotencyRecordRepository.takeOver(key, record.getCreatedAt(), requestHash,
+					System.currentTimeMillis()) == 1;
+		}
+		if (!reserved) {
+			throw inProgress();
+		}
+		ResponseEntity<?> response;
+		try {
+			response = action.get();
+		} catch (RuntimeException e) {
+			idempotencyRecordRepository.deleteById(key);
+			throw e;
+		}
+		if (response.getStatusCode().is2xxSuccessful()) {
+			record(key, requestHash, response);
+		} else {
+			idempotencyRecordRepository.deleteById(key);
+		}
+		return response;
+	}
+
+	@Scheduled(fixedDelayString = "${booklibrary.idempotency.purge-interval-ms:600000}")
+	public void purgeExpired() {
+		long cutoff = System.currentTimeMillis() - ttlSeconds * 1000;
+		completed.values().removeIf(record -> record.getCreatedAt() < cutoff);
+		int purged = idempotencyRecordRepository.deleteCreatedBefore(cutoff);
+		if (purged > 0) {
+			logger.info("Purged " + purged + " expired idempotency records");
+		}
+	}
+
+	/**
+	 * @return record of the key, expired ones included until they are purged
+	 */
+	private Optional<IdempotencyRecord> find(String key) {
+		IdempotencyRecord cached = completed.get(key);
+		if (cached != null && !isExpired(cached)) {
+			return Optional.of(cached);
+		}
+		Optional<IdempotencyRecord> stored = idempotencyRecordRepository.findById(key);
+		stored.filter(record -> record.getStatusCode() != null && !isExpired(record))
+				.ifPresent(record -> completed.put(key, record));
+		return stored;
+	}
+
+	private boolean reserve(String key, String requestHash) {
+		try {
+			idempotencyRecordRepository.insert(key, requestHash, System.currentTimeMillis());
+			return true;
+		} catch (DataIntegrityViolationException e) {
+			// Another request with the same key reserved it first
+			return false;
+		}
+	}
+
+	private void record(String key, String requestHash, ResponseEntity<?> response) {
+		try {
+			IdempotencyRecord record = new IdempotencyRecord(key, requestHash, response.getStatusCode().value(),
+					objectMapper.writeValueAsString(response.getBody()), System.currentTimeMillis());
+			idempotencyRecordRepository.save(record);
+			completed.put(key, record);
+		} catch (JsonProcessingException e) {
+			logger.warning("Could not record response for Idempotency-Key: " + key);
+			idempotencyRecordRepository.deleteById(key);
+		}
+	}
+
+	private ResponseEntity<String> replay(IdempotencyRecord record) {
+		return ResponseEntity.status(record.getStatusCode())
+				.contentType(MediaType.APPLICATION_JSON)
+				.header(REPLAYED_HEADER, "true")
+				.body(record.getResponseBody());
+	}
+
+	private boolean isExpired(IdempotencyRecord record) {
+		return System.currentTimeMillis() - record.getCreatedAt() > ttlSeconds * 1000;
+	}
+
+	private boolean isStale(IdempotencyRecord record) {
+		return System.currentTimeMillis() - record.getCreatedAt() > inProgressTimeoutSeconds * 1000;
+	}
+
+	private ResponseStatusException inProgress() {
+		return new ResponseStatusException(
+			HttpStatus.CONFLICT,
+			"A request with this Idempotency-Key is still being processed"
+		);
+	}
+
+	private String hash(Object request) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			byte[] json = objectMapper.writeValueAsString(request).getBytes(StandardCharsets.UTF_8);
+			return HexFormat.of().formatHex(digest.digest(json));
+		} catch (NoSuchAlgorithmException | JsonProcessingException e) {
+			throw new IllegalStateException("Could not fingerprint request", e);
+		}
+	}
+}
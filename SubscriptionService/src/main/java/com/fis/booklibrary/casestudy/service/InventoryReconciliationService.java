@@ -0,0 +1,262 @@
+package com.fis.booklibrary.casestudy.service;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+
+import com.fis.booklibrary.casestudy.model.Book;
+import com.fis.booklibrary.casestudy.model.InventoryDiscrepancy;
+import com.fis.booklibrary.casestudy.model.OpenLoanCount;
+import com.fis.booklibrary.casestudy.model.ReconciliationMode;
+import com.fis.booklibrary.casestudy.model.ReconciliationReport;
+import com.fis.booklibrary.casestudy.repository.SubscriptionRepository;
+
+/**
+ * Reconciles Book Service copy counts against open subscriptions.
+ * Both sides are read as bookId ordered keyset chunks and merge-joined, so
+ * only one chunk per side is held in memory. Each scheduled run checks at
+ * most books-per-run books and resumes after the last one on the next run,
+ * pausing between chunk reads to keep the load on both databases low.
+ * In CORRECT mode a drift is only written back when the previous pass
+ * found the same drift, so loans that are in flight are never corrected.
+ * The write is a compare-and-set with the copies read in this pass, sent
+ * through the book-service circuit breaker, so a checkout made since the
+ * read is never overwritten.
+ * Titles with changes accepted in degraded mode and not yet replayed are
+ * skipped, their drift is owed to Book Service and not an error.
+ */
+@Lazy(false)
+@Service
+public class InventoryReconciliationService {
+
+	private static final Logger logger = Logger.getLogger(InventoryReconciliationService.class.getName());
+	private static final String BOOK_SERVICE_URI = "http://book-service/books/";
+	private static final String CIRCUIT_BREAKER = "book-service";
+	private static final String INVENTORY_URI = BOOK_SERVICE_URI + "inventory?after={after}&limit={limit}";
+	private static final String COMPARE_AND_SET_URI = BOOK_SERVICE_URI + "{bookId}?expectedAvailable={expected}";
+
+	@Autowired
+	private SubscriptionRepository subscriptionRepository;
+
+	@Autowired
+	private RestTemplate restTemplate;
+
+	@Autowired
+	private DegradedAvailabilityService degradedAvailabilityService;
+
+	@Autowired
+	private CircuitBreakerRegistry circuitBreakerRegistry;
+
+	@Value("${booklibrary.reconciliation.enabled:true}")
+	private boolean enabled;
+
+	@Value("${booklibrary.reconciliation.mode:report}")
+	private ReconciliationMode mode;
+
+	@Value("${booklibrary.reconciliation.chunk-size:500}")
+	private int chunkSize;
+
+	@Value("${booklibrary.reconciliation.books-per-run:5000}")
+	private int booksPerRun;
+
+	@Value("${booklibrary.reconciliation.chunk-pause-ms:50}")
+	private long chunkPauseMs;
+
+	@Value("${booklibrary.reconciliation.max-reported:100}")
+	private int maxReported;
+
+	private String cursor = "";
+	private ReconciliationReport currentPass;
+	private volatile ReconciliationReport lastReport;
+	// Expected copies of every drifted title, not capped like the report, to confirm drifts on the next pass
+	private Map<String, Long> previousDrift = Collections.emptyMap();
+	private Map<String, Long> currentDrift = new HashMap<>();
+
+	@Scheduled(initialDelayString = "${booklibrary.reconciliation.interval-ms:60000}",
+			fixedDelayString = "${booklibrary.reconciliation.interval-ms:60000}")
+	public void scheduledRun() {
+		if (enabled) {
+			reconcileIncrement();
+		}
+	}
+
+	/**
+	 * Check the next books-per-run books after the cursor
+	 * @return true if this run completed a pass over the catalog
+	 */
+	public synchronized boolean reconcileIncrement() {
+		if (currentPass == null) {
+			currentPass = new ReconciliationReport();
+			currentPass.setStartedAt(System.currentTimeMillis());
+		}
+		ChunkCursor<Book> books = new ChunkCursor<>(this::fetchBooks, Book::getBookId, cursor);
+		ChunkCursor<OpenLoanCount> loans = new ChunkCursor<>(
+				after -> subscriptionRepository.countOpenLoansAfter(after, PageRequest.of(0, chunkSize)),
+				OpenLoanCount::getBookId, cursor);
+		try {
+			for (int checked = 0; checked < booksPerRun && (books.hasNext() || loans.hasNext()); checked++) {
+				String bookKey = books.hasNext() ? books.peekKey() : null;
+				String loanKey = loans.hasNext() ? loans.peekKey() : null;
+				int order = bookKey == null ? 1 : loanKey == null ? -1 : bookKey.compareTo(loanKey);
+				if (order < 0) {
+					check(books.next(), 0);
+					cursor = bookKey;
+				} else if (order > 0) {
+					OpenLoanCount orphan = loans.next();
+					report(new InventoryDiscrepancy(orphan.getBookId(), null, null, orphan.getOpenLoans(), null, false));
+					cursor = loanKey;
+				} else {
+					check(books.next(), loans.next().getOpenLoans());
+					cursor = bookKey;
+				}
+			}
+		} catch (RestClientException | CallNotPermittedException e) {
+			// Resume from the cursor once Book Service is reachable again
+			logger.warning("Inventory reconciliation paused, Book Service unavailable: " + e.getMessage());
+			return false;
+		}
+		if (books.hasNext() || loans.hasNext()) {
+			return false;
+		}
+		completePass();
+		return true;
+	}
+
+	/**
+	 * @return report of the last completed pass, null before the first one completes
+	 */
+	public ReconciliationReport getLastReport() {
+		return lastReport;
+	}
+
+	private void check(Book book, long openLoans) {
+		currentPass.setBooksChecked(currentPass.getBooksChecked() + 1);
+		long expectedAvailable = book.getTotalCopies() - openLoans;
+		if (expectedAvailable == book.getCopiesAvailable() || degradedAvailabilityService.hasPending(book.getBookId())) {
+			return;
+		}
+		InventoryDiscrepancy discrepancy = new InventoryDiscrepancy(book.getBookId(), book.getTotalCopies(),
+				book.getCopiesAvailable(), openLoans, expectedAvailable, false);
+		// More open loans than copies needs a person to look at it
+		if (mode == ReconciliationMode.CORRECT && expectedAvailable >= 0
+				&& Long.valueOf(expectedAvailable).equals(previousDrift.get(book.getBookId()))
+				&& correct(book, (int) expectedAvailable)) {
+			discrepancy.setCorrected(true);
+			currentPass.setCorrected(currentPass.getCorrected() + 1);
+			logger.info("Corrected available copies for bookId: " + book.getBookId()
+					+ " from " + book.getCopiesAvailable() + " to " + expectedAvailable);
+		} else {
+			currentDrift.put(book.getBookId(), expectedAvailable);
+		}
+		report(discrepancy);
+	}
+
+	/**
+	 * @return false if the copies changed since they were read, the drift is checked again next pass
+	 */
+	private boolean correct(Book book, int expectedAvailable) {
+		CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER);
+		return circuitBreaker.executeSupplier(() -> {
+			try {
+				restTemplate.put(COMPARE_AND_SET_URI, expectedAvailable, book.getBookId(), book.getCopiesAvailable());
+				return true;
+			} catch (HttpClientErrorException.Conflict e) {
+				return false;
+			}
+		});
+	}
+
+	private void report(InventoryDiscrepancy discrepancy) {
+		currentPass.setDiscrepancyCount(currentPass.getDiscrepancyCount() + 1);
+		if (currentPass.getDiscrepancies().size() < maxReported) {
+			currentPass.getDiscrepancies().add(discrepancy);
+		}
+	}
+
+	private void completePass() {
+		currentPass.setCompletedAt(System.currentTimeMillis());
+		logger.info("Inventory reconciliation checked " + currentPass.getBooksChecked() + " books, found "
+				+ currentPass.getDiscrepancyCount() + " discrepancies, corrected " + currentPass.getCorrected());
+		lastReport = currentPass;
+		previousDrift = currentDrift;
+		currentDrift = new HashMap<>();
+		currentPass = null;
+		cursor = "";
+	}
+
+	private List<Book> fetchBooks(String after) {
+		Book[] books = restTemplate.getForObject(INVENTORY_URI, Book[].class, after, chunkSize);
+		return books != null ? Arrays.asList(books) : Collections.emptyList();
+	}
+
+	private void pause() {
+		try {
+			Thread.sleep(chunkPauseMs);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Iterates a bookId ordered source one chunk at a time
+	 */
+	private class ChunkCursor<T> {
+
+		private final Function<String, List<T>> fetch;
+		private final Function<T, String> key;
+		private final Deque<T> chunk = new ArrayDeque<>();
+		private String after;
+		private boolean exhausted;
+		private boolean fetched;
+
+		ChunkCursor(Function<String, List<T>> fetch, Function<T, String> key, String after) {
+			this.fetch = fetch;
+			this.key = key;
+			this.after = after;
+		}
+
+		boolean hasNext() {
+			if (chunk.isEmpty() && !exhausted) {
+				if (fetched) {
+					pause();
+				}
+				List<T> next = fetch.apply(after);
+				fetched = true;
+				chunk.addAll(next);
+				exhausted = next.size() < chunkSize;
+				if (!next.isEmpty()) {
+					after = key.apply(next.get(next.size() - 1));
+				}
+			}
+			return !chunk.isEmpty();
+		}
+
+		String peekKey() {
+			return key.apply(chunk.peekFirst());
+		}
+
+		T next() {
+			return chunk.pollFirst();
+		}
+	}
+}
@@ -0,0 +1,339 @@
+package com.fis.booklibrary.casestudy.service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fis.booklibrary.casestudy.model.BookLoanCount;
+import com.fis.booklibrary.casestudy.model.LoanStatsBackfill;
+import com.fis.booklibrary.casestudy.model.LoanStatsBucket;
+import com.fis.booklibrary.casestudy.model.LoanStatsBucketKey;
+import com.fis.booklibrary.casestudy.model.LoanStatsDimension;
+import com.fis.booklibrary.casestudy.model.LoanStatsPending;
+import com.fis.booklibrary.casestudy.model.LoanStatsPeriod;
+import com.fis.booklibrary.casestudy.model.LoanStatsReport;
+import com.fis.booklibrary.casestudy.model.Subscription;
+import com.fis.booklibrary.casestudy.repository.LoanStatsBackfillRepository;
+import com.fis.booklibrary.casestudy.repository.LoanStatsBucketRepository;
+import com.fis.booklibrary.casestudy.repository.LoanStatsPendingRepository;
+import com.fis.booklibrary.casestudy.repository.SubscriptionRepository;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Maintains per-day loan statistics for all subscriptions, per book and per
+ * subscriber in LOAN_STATS_BUCKET.
+ * Every added subscription increments its buckets once committed, so a report
+ * reads one row per day of its range whatever the size of the history. Weeks
+ * and months are summed from the days. A loan counts on the day subscribed,
+ * a return on the day returned, with its duration when both dates are known.
+ * An added subscription is recorded in LOAN_STATS_PENDING with it and counted
+ * in the transaction deleting that row, so an increment that fails after the
+ * commit is retried by the repair pass instead of being lost.
+ * The subscriptions that existed before the statistics are counted once the
+ * application is ready, after the startup runners saved the seed data, page
+ * by page, each page with the high-water mark in LOAN_STATS_BACKFILL, so an
+ * interrupted backfill resumes after the last page applied.
+ */
+@Lazy(false)
+@Service
+public class LoanStatsService {
+
+	private static final Logger logger = Logger.getLogger(LoanStatsService.class.getName());
+	private static final String ALL_KEY = "*";
+	private static final DateTimeFormatter DATE_FORMAT = new DateTimeFormatterBuilder()
+			.parseCaseInsensitive().appendPattern("dd-MMM-yyyy").toFormatter(Locale.ENGLISH);
+
+	@Autowired
+	private LoanStatsBucketRepository loanStatsBucketRepository;
+
+	@Autowired
+	private LoanStatsBackfillRepository loanStatsBackfillRepository;
+
+	@Autowired
+	private LoanStatsPendingRepository loanStatsPendingRepository;
+
+	@Autowired
+	private SubscriptionRepository subscriptionRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Value("${booklibrary.loan-stats.backfill-page-size:1000}")
+	private int backfillPageSize;
+
+	@Value("${booklibrary.loan-stats.repair-interval-ms:60000}")
+	private long repairIntervalMs;
+
+	private TransactionTemplate newTransaction;
+
+	@PostConstruct
+	public void init() {
+		// Runs after the subscription committed, so it needs a transaction of its own
+		newTransaction = new TransactionTemplate(transactionManager);
+		newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void backfill() {
+		LoanStatsBackfill progress = loanStatsBackfillRepository.findById(LoanStatsBackfill.ID)
+				.orElseGet(this::startBackfill);
+		long after = progress.getLastSubscriptionId();
+		long subscriptions = 0;
+		while (after < progress.getUpToSubscriptionId()) {
+			long upTo = progress.getUpToSubscriptionId();
+			List<Subscription> page = subscriptionRepository
+					.findByIdGreaterThanOrderByIdAsc(after, PageRequest.of(0, backfillPageSize)).stream()
+					.filter(subscription -> subscription.getId() <= upTo)
+					.toList();
+			// Up to the mark when the last subscriptions were deleted
+			long last = page.isEmpty() ? upTo : page.get(page.size() - 1).getId();
+			long from = after;
+			boolean applied = newTransaction.execute(status -> {
+				if (loanStatsBackfillRepository.advance(from, last) == 0) {
+					return false;
+				}
+				increment(page);
+				return true;
+			});
+			if (applied) {
+				after = last;
+				subscriptions += page.size();
+			} else {
+				// Another instance applied the page, continue after its mark
+				after = loanStatsBackfillRepository.findById(LoanStatsBackfill.ID).get().getLastSubscriptionId();
+			}
+		}
+		if (subscriptions > 0) {
+			logger.info("Loan statistics built from " + subscriptions + " subscriptions");
+		}
+	}
+
+	/**
+	 * Record the subscription as not counted yet, in the transaction adding it
+	 */
+	@EventListener
+	public void recordPending(SubscriptionAddedEvent event) {
+		loanStatsPendingRepository.insert(event.getSubscription().getId(), System.currentTimeMillis());
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onSubscriptionAdded(SubscriptionAddedEvent event) {
+		try {
+			applyPending(event.getSubscription());
+		} catch (DataIntegrityViolationException e) {
+			// Another instance created the same bucket concurrently, it exists now
+			applyPending(event.getSubscription());
+		} catch (RuntimeException e) {
+			logger.log(Level.WARNING, "Subscription " + event.getSubscription().getId()
+					+ " not counted yet, left to the repair pass", e);
+		}
+	}
+
+	/**
+	 * Count the subscriptions still pending after a failed increment or a
+	 * restart between their commit and their increment
+	 */
+	@Scheduled(fixedDelayString = "${booklibrary.loan-stats.repair-interval-ms:60000}",
+			initialDelayString = "${booklibrary.loan-stats.repair-interval-ms:60000}")
+	public void repair() {
+		List<LoanStatsPending> pending = loanStatsPendingRepository.findByCreatedAtLessThanOrderBySubscriptionIdAsc(
+				System.currentTimeMillis() - repairIntervalMs, PageRequest.of(0, backfillPageSize));
+		int repaired = 0;
+		for (LoanStatsPending entry : pending) {
+			try {
+				subscriptionRepository.findById(entry.getSubscriptionId()).ifPresentOrElse(this::applyPending,
+						() -> loanStatsPendingRepository.deleteById(entry.getSubscriptionId()));
+				repaired++;
+			} catch (RuntimeException e) {
+				logger.log(Level.WARNING, "Subscription " + entry.getSubscriptionId() + " still not counted", e);
+			}
+		}
+		if (repaired > 0) {
+			logger.info("Loan statistics repaired with " + repaired + " pending subscriptions");
+		}
+	}
+
+	/**
+	 * Loans and returns between two dates, optionally for one book or one subscriber
+	 * @param from first day, inclusive
+	 * @param to last day, inclusive
+	 * @param bucket day, week (starting Monday) or month
+	 * @param bookId book to report on, or null
+	 * @param subscriberName subscriber to report on, or null
+	 * @return totals and one entry per period with activity
+	 */
+	public LoanStatsReport getReport(LocalDate from, LocalDate to, String bucket, String bookId, String subscriberName) {
+		LoanStatsDimension dimension = LoanStatsDimension.ALL;
+		String dimensionKey = ALL_KEY;
+		if (bookId != null) {
+			dimension = LoanStatsDimension.BOOK;
+			dimensionKey = bookId;
+		} else if (subscriberName != null) {
+			dimension = LoanStatsDimension.SUBSCRIBER;
+			dimensionKey = subscriberName;
+		}
+
+		Map<LocalDate, LoanStatsBucket> periods = new LinkedHashMap<>();
+		LoanStatsBucket total = new LoanStatsBucket();
+		for (LoanStatsBucket day : loanStatsBucketRepository
+				.findByDimensionAndDimensionKeyAndBucketDateBetweenOrderByBucketDate(dimension, dimensionKey, from, to)) {
+			add(periods.computeIfAbsent(periodStart(day.getBucketDate(), bucket), start -> new LoanStatsBucket()), day);
+			add(total, day);
+		}
+
+		LoanStatsReport report = new LoanStatsReport();
+		report.setFrom(from);
+		report.setTo(to);
+		report.setBucket(bucket);
+		report.setBookId(bookId);
+		report.setSubscriberName(subscriberName);
+		report.setLoans(total.getLoans());
+		report.setReturns(total.getReturns());
+		report.setAverageLoanDays(averageLoanDays(total));
+		periods.forEach((start, period) -> report.getPeriods().add(
+				new LoanStatsPeriod(start, period.getLoans(), period.getReturns(), averageLoanDays(period))));
+		return report;
+	}
+
+	/**
+	 * @return books with the most loans between two dates, most loaned first
+	 */
+	public List<BookLoanCount> getMostLoanedBooks(LocalDate from, LocalDate to, int limit) {
+		return loanStatsBucketRepository.findMostLoanedBooks(from, to, PageRequest.of(0, limit));
+	}
+
+	/**
+	 * The subscriptions up to the latest are left to the backfill, those added
+	 * from now on are pending until counted. With statistics built before the
+	 * high-water mark existed, the backfill is recorded as done.
+	 */
+	private LoanStatsBackfill startBackfill() {
+		long upTo = subscriptionRepository.findMaxId();
+		long last = loanStatsBucketRepository.count() > 0 ? upTo : 0;
+		try {
+			newTransaction.executeWithoutResult(status -> loanStatsBackfillRepository.insert(last, upTo));
+			return new LoanStatsBackfill(LoanStatsBackfill.ID, last, upTo);
+		} catch (DataIntegrityViolationException e) {
+			// Another instance started it first
+			return loanStatsBackfillRepository.findById(LoanStatsBackfill.ID).get();
+		}
+	}
+
+	/**
+	 * Count a subscription in the transaction deleting its pending row, so
+	 * that it is counted once when the repair pass runs concurrently
+	 */
+	private void applyPending(Subscription subscription) {
+		newTransaction.executeWithoutResult(status -> {
+			if (loanStatsPendingRepository.deleteBySubscriptionId(subscription.getId()) == 1) {
+				increment(List.of(subscription));
+			}
+		});
+	}
+
+	private void increment(List<Subscription> subscriptions) {
+		Map<LoanStatsBucketKey, LoanStatsBucket> deltas = new LinkedHashMap<>();
+		subscriptions.forEach(subscription -> collect(subscription, deltas));
+		deltas.forEach((key, delta) ->
+				loanStatsBucketRepository.increment(key.getDimension().name(), key.getDimensionKey(), key.getBucketDate(),
+						delta.getLoans(), delta.getReturns(), delta.getTimedReturns(), delta.getLoanDays()));
+	}
+
+	private void collect(Subscription subscription, Map<LoanStatsBucketKey, LoanStatsBucket> deltas) {
+		LocalDate subscribed = parseDate(subscription.getDateSubscriber());
+		LoanStatsBucket delta = new LoanStatsBucket();
+		LocalDate day;
+		if (subscription.getDateReturned() == null) {
+			day = subscribed;
+			delta.setLoans(1);
+		} else {
+			day = parseDate(subscription.getDateReturned());
+			delta.setReturns(1);
+			if (day != null && subscribed != null && !day.isBefore(subscribed)) {
+				delta.setTimedReturns(1);
+				delta.setLoanDays(ChronoUnit.DAYS.between(subscribed, day));
+			}
+		}
+		if (day == null) {
+			logger.fine("Subscription " + subscription.getId() + " has no readable date, not counted");
+			return;
+		}
+		collect(deltas, new LoanStatsBucketKey(LoanStatsDimension.ALL, ALL_KEY, day), delta);
+		if (subscription.getBookId() != null) {
+			collect(deltas, new LoanStatsBucketKey(LoanStatsDimension.BOOK, subscription.getBookId(), day), delta);
+		}
+		if (subscription.getSubscriberName() != null) {
+			collect(deltas, new LoanStatsBucketKey(LoanStatsDimension.SUBSCRIBER, subscription.getSubscriberName(), day), delta);
+		}
+	}
+
+	private void collect(Map<LoanStatsBucketKey, LoanStatsBucket> deltas, LoanStatsBucketKey key, LoanStatsBucket delta) {
+		add(deltas.computeIfAbsent(key, k -> new LoanStatsBucket()), delta);
+	}
+
+	private static void add(LoanStatsBucket sum, LoanStatsBucket bucket) {
+		sum.setLoans(sum.getLoans() + bucket.getLoans());
+		sum.setReturns(sum.getReturns() + bucket.getReturns());
+		sum.setTimedReturns(sum.getTimedReturns() + bucket.getTimedReturns());
+		sum.setLoanDays(sum.getLoanDays() + bucket.getLoanDays());
+	}
+
+	private static Double averageLoanDays(LoanStatsBucket bucket) {
+		return bucket.getTimedReturns() == 0 ? null : (double) bucket.getLoanDays() / bucket.getTimedReturns();
+	}
+
+	private static LocalDate periodStart(LocalDate day, String bucket) {
+		switch (bucket) {
+		case "week":
+			return day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+		case "month":
+			return day.withDayOfMonth(1);
+		default:
+			return day;
+		}
+	}
+
+	/**
+	 * Subscriptions carry dates as text, dd-MMM-yyyy as the service writes
+	 * them, or ISO as some clients send them
+	 */
+	static LocalDate parseDate(String date) {
+		if (date == null) {
+			return null;
+		}
+		try {
+			return LocalDate.parse(date.trim(), DATE_FORMAT);
+		} catch (DateTimeParseException e) {
+			try {
+				return LocalDate.parse(date.trim());
+			} catch (DateTimeParseException notIso) {
+				return null;
+			}
+		}
+	}
+}
@@ -0,0 +1,308 @@
+package com.fis.booklibrary.casestudy.service;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jakarta.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import com.fis.booklibrary.casestudy.model.Reservation;
+import com.fis.booklibrary.casestudy.model.ReservationStatus;
+import com.fis.booklibrary.casestudy.model.Subscription;
+import com.fis.booklibrary.casestudy.repository.ReservationRepository;
+
+/**
+ * Per-book FIFO waitlist. A hold is placed when no copy is available and the
+ * oldest waiting hold is turned into a subscription as soon as a return
+ * releases a copy. The returned copy is handed to the hold directly instead
+ * of going back to stock, where a new checkout could take it first.
+ * Clients wait for that through a long poll instead of retrying the
+ * subscription. A hold whose fulfilment failed goes back to waiting with
+ * the copy it took given back, and holds left claimed by a crashed instance
+ * are recovered by a sweep, which also fulfils holds on titles restocked
+ * without a return.
+ */
+@Service
+public class ReservationService {
+
+	private static final Logger logger = Logger.getLogger(ReservationService.class.getName());
+	private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd-MMM-yyyy", Locale.ENGLISH);
+
+	@Autowired
+	private ReservationRepository reservationRepository;
+
+	@Autowired
+	private SubscriptionService subscriptionService;
+
+	@Autowired
+	private DegradedAvailabilityService degradedAvailabilityService;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Value("${booklibrary.waitlist.max-wait-ms:30000}")
+	private long maxWaitMs;
+
+	@Value("${booklibrary.waitlist.fulfilling-timeout-ms:60000}")
+	private long fulfillingTimeoutMs;
+
+	private final Map<Long, List<DeferredResult<ResponseEntity<Reservation>>>> waiters = new ConcurrentHashMap<>();
+
+	private TransactionTemplate transaction;
+
+	@PostConstruct
+	public void init() {
+		transaction = new TransactionTemplate(transactionManager);
+	}
+
+	/**
+	 * Queue the subscriber for the book
+	 * @param subscription rejected subscription request
+	 * @return waiting reservation with its queue position
+	 */
+	public Reservation placeHold(Subscription subscription) {
+		Reservation reservation = new Reservation(null, subscription.getSubscriberName(), subscription.getBookId(),
+				subscription.getDateSubscriber(), ReservationStatus.WAITING, null, null, null);
+		Reservation saved = reservationRepository.save(reservation);
+		logger.info("Hold placed for bookId: " + saved.getBookId() + " reservationId: " + saved.getId());
+		return withQueuePosition(saved);
+	}
+
+	public Optional<Reservation> getReservation(Long id) {
+		return reservationRepository.findById(id).map(this::withQueuePosition);
+	}
+
+	/**
+	 * Cancel a waiting hold
+	 * @param id reservation identifier
+	 * @return true if the hold was still waiting and is now cancelled
+	 */
+	public boolean cancel(Long id) {
+		if (reservationRepository.transition(id, ReservationStatus.WAITING, ReservationStatus.CANCELLED) == 0) {
+			return false;
+		}
+		reservationRepository.findById(id).ifPresent(this::notifyWaiters);
+		return true;
+	}
+
+	/**
+	 * Long poll until the reservation leaves the waitlist or the timeout expires
+	 * @param id reservation identifier
+	 * @param timeoutMs how long to wait, capped at booklibrary.waitlist.max-wait-ms
+	 * @return result completed with the reservation's latest state
+	 */
+	public DeferredResult<ResponseEntity<Reservation>> awaitReservation(Long id, long timeoutMs) {
+		DeferredResult<ResponseEntity<Reservation>> result = new DeferredResult<>(Math.min(timeoutMs, maxWaitMs));
+		waiters.computeIfAbsent(id, key -> new CopyOnWriteArrayList<>()).add(result);
+		result.onTimeout(() -> getReservation(id).ifPresent(current -> result.setResult(ResponseEntity.ok(current))));
+		result.onCompletion(() -> waiters.computeIfPresent(id, (key, reservationWaiters) -> {
+			reservationWaiters.remove(result);
+			return reservationWaiters.isEmpty() ? null : reservationWaiters;
+		}));
+
+		// Checked after registering so a fulfilment racing with this call is not missed
+		getReservation(id).filter(current -> current.getStatus() != ReservationStatus.WAITING)
+				.ifPresent(current -> result.setResult(ResponseEntity.ok(current)));
+		return result;
+	}
+
+	/**
+	 * Hand a returned copy straight to the oldest waiting hold of the book.
+	 * The return and the hold's subscription are saved together and Book
+	 * Service is not called, its available copies stay as they are.
+	 * @param returned subscription returning a copy
+	 * @return saved return, empty if nobody was waiting and the copy goes back to stock
+	 */
+	public Optional<Subscription> handOverReturnedCopy(Subscription returned) {
+		Optional<Reservation> claimed = claimNext(returned.getBookId());
+		if (claimed.isEmpty()) {
+			return Optional.empty();
+		}
+		Reservation reservation = claimed.get();
+		Subscription savedReturn;
+		try {
+			savedReturn = transaction.execute(status -> {
+				Subscription saved = subscriptionService.addSubscription(returned);
+				markFulfilled(reservation, checkoutFor(reservation));
+				return saved;
+			});
+		} catch (RuntimeException e) {
+			throw failed(reservation, ReservationStatus.FULFILLING, e);
+		}
+		logger.info("Returned copy of bookId: " + returned.getBookId() + " handed to reservationId: " + reservation.getId());
+		notifyWaiters(reservation);
+		return Optional.of(savedReturn);
+	}
+
+	/**
+	 * Hand a copy available in Book Service stock to the oldest waiting hold of the book
+	 * @param bookId book whose copy was released
+	 * @return fulfilled reservation, empty if nobody was waiting or the copy could not be taken
+	 */
+	public Optional<Reservation> fulfilNext(String bookId) {
+		Optional<Reservation> claimed = claimNext(bookId);
+		if (claimed.isEmpty()) {
+			return Optional.empty();
+		}
+		Reservation reservation = claimed.get();
+		Subscription checkout = checkoutFor(reservation);
+		ResponseEntity<String> availabilityCheck;
+		try {
+			availabilityCheck = subscriptionService.updateAvailableCopies(checkout);
+		} catch (RuntimeException e) {
+			release(reservation, ReservationStatus.FULFILLING);
+			throw e;
+		}
+		if (!availabilityCheck.getStatusCode().is2xxSuccessful()) {
+			logger.warning("Could not fulfil reservationId: " + reservation.getId() + ", keeping it on the waitlist");
+			release(reservation, ReservationStatus.FULFILLING);
+			return Optional.empty();
+		}
+		// A change accepted without Book Service is only journaled with the subscription, nothing to give back
+		boolean provisional = degradedAvailabilityService.isProvisional(checkout);
+		ReservationStatus claimedStatus = ReservationStatus.FULFILLING;
+		if (!provisional && reservationRepository.transition(reservation.getId(), ReservationStatus.FULFILLING,
+				ReservationStatus.COPY_TAKEN) == 1) {
+			claimedStatus = ReservationStatus.COPY_TAKEN;
+		}
+		try {
+			transaction.executeWithoutResult(status -> markFulfilled(reservation, checkout));
+		} catch (RuntimeException e) {
+			if (provisional) {
+				degradedAvailabilityService.discard(checkout);
+			} else {
+				giveBack(reservation);
+			}
+			throw failed(reservation, claimedStatus, e);
+		}
+		notifyWaiters(reservation);
+		return Optional.of(reservation);
+	}
+
+	/**
+	 * Put holds claimed for longer than booklibrary.waitlist.fulfilling-timeout-ms,
+	 * by an instance that stopped before fulfilling them, back on the waitlist,
+	 * giving back the copies they took. Then fulfil the waiting holds of titles
+	 * with copies in stock, such as titles restocked directly in Book Service.
+	 */
+	@Scheduled(initialDelayString = "${booklibrary.waitlist.fulfilling-timeout-ms:60000}",
+			fixedDelayString = "${booklibrary.waitlist.fulfilling-timeout-ms:60000}")
+	public void recoverStuckHolds() {
+		long before = System.currentTimeMillis() - fulfillingTimeoutMs;
+		for (Reservation reservation : reservationRepository.findByStatusAndFulfillingSinceLessThan(
+				ReservationStatus.COPY_TAKEN, before)) {
+			// Released first so that only one instance gives the copy back
+			if (reservationRepository.transition(reservation.getId(), ReservationStatus.COPY_TAKEN,
+					ReservationStatus.WAITING) == 1) {
+				giveBack(reservation);
+			}
+		}
+		int recovered = reservationRepository.releaseClaimedBefore(before);
+		if (recovered > 0) {
+			logger.warning("Put " + recovered + " holds stuck while being fulfilled back on the waitlist");
+		}
+		for (String bookId : reservationRepository.findWaitingBookIds()) {
+			try {
+				while (fulfilNext(bookId).isPresent()) {
+					// Until the copies in stock or the holds run out
+				}
+			} catch (RuntimeException e) {
+				logger.log(Level.WARNING, "Could not fulfil holds of bookId: " + bookId, e);
+			}
+		}
+	}
+
+	private Optional<Reservation> claimNext(String bookId) {
+		while (true) {
+			Optional<Reservation> next = reservationRepository.findFirstByBookIdAndStatusOrderByIdAsc(bookId,
+					ReservationStatus.WAITING);
+			if (next.isEmpty()) {
+				return Optional.empty();
+			}
+			Reservation reservation = next.get();
+			if (reservationRepository.claim(reservation.getId(), System.currentTimeMillis()) == 1) {
+				return Optional.of(reservation);
+			}
+			// Claimed by a concurrent release, try the next hold
+		}
+	}
+
+	private void markFulfilled(Reservation reservation, Subscription checkout) {
+		Subscription created = subscriptionService.addSubscription(checkout);
+		reservation.setStatus(ReservationStatus.FULFILLED);
+		reservation.setSubscriptionId(created.getId());
+		reservation.setFulfillingSince(null);
+		reservationRepository.save(reservation);
+		logger.info("Reservation " + reservation.getId() + " fulfilled with subscriptionId: " + created.getId());
+	}
+
+	/**
+	 * Put a hold whose fulfilment was rolled back on the waitlist again
+	 */
+	private RuntimeException failed(Reservation reservation, ReservationStatus claimedStatus, RuntimeException e) {
+		logger.log(Level.SEVERE, "Could not fulfil reservationId: " + reservation.getId() + ", keeping it on the waitlist", e);
+		reservation.setStatus(ReservationStatus.WAITING);
+		reservation.setSubscriptionId(null);
+		release(reservation, claimedStatus);
+		return e;
+	}
+
+	private void release(Reservation reservation, ReservationStatus claimedStatus) {
+		reservationRepository.transition(reservation.getId(), claimedStatus, ReservationStatus.WAITING);
+	}
+
+	/**
+	 * Put the copy taken for a hold back in Book Service stock, its subscription was not saved
+	 */
+	private void giveBack(Reservation reservation) {
+		Subscription giveBack = checkoutFor(reservation);
+		giveBack.setDateReturned(giveBack.getDateSubscriber());
+		try {
+			ResponseEntity<String> result = subscriptionService.updateAvailableCopies(giveBack);
+			degradedAvailabilityService.journal(giveBack);
+			if (result.getStatusCode().is2xxSuccessful()) {
+				logger.info("Gave back the copy taken for reservationId: " + reservation.getId());
+				return;
+			}
+		} catch (RuntimeException e) {
+			logger.log(Level.WARNING, "Error giving back the copy of reservationId: " + reservation.getId(), e);
+		}
+		logger.severe("Copy taken for reservationId: " + reservation.getId() + " not given back, left to reconciliation");
+	}
+
+	private Subscription checkoutFor(Reservation reservation) {
+		return new Subscription(null, reservation.getSubscriberName(),
+				LocalDate.now().format(DATE_FORMAT).toUpperCase(Locale.ENGLISH), null, reservation.getBookId());
+	}
+
+	private void notifyWaiters(Reservation reservation) {
+		List<DeferredResult<ResponseEntity<Reservation>>> reservationWaiters = waiters.remove(reservation.getId());
+		if (reservationWaiters != null) {
+			reservationWaiters.forEach(waiter -> waiter.setResult(ResponseEntity.ok(reservation)));
+		}
+	}
+
+	private Reservation withQueuePosition(Reservation reservation) {
+		if (reservation.getStatus() == ReservationStatus.WAITING) {
+			reservation.setQueuePosition((int) reservationRepository.countByBookIdAndStatusAndIdLessThan(
+					reservation.getBookId(), ReservationStatus.WAITING, reservation.getId()) + 1);
+		}
+		return reservation;
+	}
+}
@@ -0,0 +1,16 @@
+package com.fis.booklibrary.casestudy.service;
+
+import com.fis.booklibrary.casestudy.model.Subscription;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published by SubscriptionService for every subscription or return saved
+ */
+@Getter
+@AllArgsConstructor
+public class SubscriptionAddedEvent {
+
+	private final Subscription subscription;
+}
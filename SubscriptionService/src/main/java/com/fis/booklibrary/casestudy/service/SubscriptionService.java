@@ -10,6 +10,7 @@ import java.util.logging.Logger;
 import jakarta.transaction.Transactional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
@@ -18,6 +19,7 @@ import org.springframework.web.client.RestClientException;
 
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 
+import com.fis.booklibrary.casestudy.exception.UncertainUpdateException;
 import com.fis.booklibrary.casestudy.model.Book;
 import com.fis.booklibrary.casestudy.model.Subscription;
 import com.fis.booklibrary.casestudy.repository.SubscriptionRepository;
@@ -34,6 +36,12 @@ public class SubscriptionService {
 	@Autowired
 	private RestTemplate restTemplate;
 
+	@Autowired
+	private ApplicationEventPublisher eventPublisher;
+
+	@Autowired
+	private DegradedAvailabilityService degradedAvailabilityService;
+
 	public List<Subscription> getSubscriptions() {
 		return subscriptionRepository.findAll();
 	}
@@ -47,16 +55,54 @@ public class SubscriptionService {
 		return subscriptionRepository.findById(id);
 	}
 
+	/**
+	 * Save a loan, or a return together with closing the loan it ends, so
+	 * that only loans not returned yet have no return date. A change accepted
+	 * while Book Service was down is journaled in the same transaction.
+	 * @param subscription loan, or return when dateReturned is set
+	 * @return saved subscription
+	 */
 	@Transactional
 	public Subscription addSubscription(Subscription subscription) {
-		return subscriptionRepository.save(subscription);
+		degradedAvailabilityService.journal(subscription);
+		if (subscription.getDateReturned() != null) {
+			closeLoan(subscription);
+		}
+		Subscription savedSubscription = subscriptionRepository.save(subscription);
+		eventPublisher.publishEvent(new SubscriptionAddedEvent(savedSubscription));
+		return savedSubscription;
+	}
+	
+	/**
+	 * Close the subscriber's oldest open loan of the book, or the book's oldest
+	 * one when the subscriber has none
+	 */
+	private void closeLoan(Subscription returned) {
+		while (true) {
+			Optional<Subscription> loan = subscriptionRepository
+					.findFirstByBookIdAndSubscriberNameAndDateReturnedIsNullOrderByIdAsc(returned.getBookId(),
+							returned.getSubscriberName())
+					.or(() -> subscriptionRepository.findFirstByBookIdAndDateReturnedIsNullOrderByIdAsc(returned.getBookId()));
+			if (loan.isEmpty()) {
+				logger.warning("No open loan of bookId: " + returned.getBookId() + " to close for the return");
+				return;
+			}
+			if (subscriptionRepository.closeLoan(loan.get().getId(), returned.getDateReturned()) == 1) {
+				return;
+			}
+			// Closed by a concurrent return, close the next one
+		}
 	}
 
 	@CircuitBreaker(name = "book-service", fallbackMethod = "getAvailableCopiesFallback")
 	public int getAvailableCopies(Subscription subscription) {
 		try {
 			Book book = restTemplate.getForObject(BOOK_SERVICE_URI + subscription.getBookId(), Book.class);
-			return book != null ? book.getCopiesAvailable() : 0;
+			if (book == null) {
+				return 0;
+			}
+			degradedAvailabilityService.observe(book);
+			return book.getCopiesAvailable();
 		} catch (RestClientException e) {
 			logger.log(Level.WARNING, "Error calling book-service for bookId: " + subscription.getBookId(), e);
 			throw new RuntimeException("Failed to fetch book availability", e);
@@ -65,7 +111,9 @@ public class SubscriptionService {
 
 	public int getAvailableCopiesFallback(Subscription subscription, Exception ex) {
 		logger.log(Level.SEVERE, "Circuit breaker activated for book-service: " + ex.getMessage());
-		return 0;
+		// Conservative estimate from the last-known availability, 0 if there is none
+		return degradedAvailabilityService.isOutage(ex)
+				? degradedAvailabilityService.estimateAvailableCopies(subscription.getBookId()) : 0;
 	}
 
 	@Transactional
@@ -89,11 +137,13 @@ public class SubscriptionService {
 
 			try {
 				restTemplate.put(BOOK_SERVICE_URI + subscription.getBookId(), updatedRemainingCopies);
+				degradedAvailabilityService.observe(subscription.getBookId(), updatedRemainingCopies);
 				logger.info("Successfully updated book copies for bookId: " + subscription.getBookId());
 				return ResponseEntity.ok(subscription.toString());
 			} catch (RestClientException e) {
 				logger.log(Level.SEVERE, "Error updating book availability: " + e.getMessage());
-				throw new RuntimeException("Failed to update book availability", e);
+				// The update may have been applied, it must not be applied again provisionally
+				throw new UncertainUpdateException("Failed to update book availability", e);
 			}
 		}
 
@@ -102,6 +152,10 @@ public class SubscriptionService {
 
 	public ResponseEntity<String> updateAvailableCopiesFallback(Subscription subscription, Exception ex) {
 		logger.log(Level.SEVERE, "Circuit breaker activated during update: " + ex.getMessage());
+		// Degraded mode: decide from last-known availability, replayed to Book Service later
+		if (degradedAvailabilityService.isOutage(ex) && degradedAvailabilityService.applyProvisionally(subscription)) {
+			return ResponseEntity.ok(subscription.toString());
+		}
 		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
 				.body("Book service is temporarily unavailable. Please try again later - " + LocalDateTime.now()
 						.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
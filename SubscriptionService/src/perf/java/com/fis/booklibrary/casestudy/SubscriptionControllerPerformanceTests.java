@@ -0,0 +1,87 @@
+package com.fis.booklibrary.casestudy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.MockMvcPrint;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.client.RestTemplate;
+
+import com.fis.booklibrary.casestudy.model.Book;
+import com.fis.booklibrary.casestudy.model.Subscription;
+import com.fis.booklibrary.casestudy.repository.SubscriptionRepository;
+
+/**
+ * Performance regression suite for SubscriptionController, run with:
+ * mvn test -Pperf-regression
+ * Fixed workload over 200 subscriptions with Book Service stubbed, compared
+ * with src/test/resources/perf-baseline.properties
+ */
+@SpringBootTest(properties = "eureka.client.enabled=false")
+@AutoConfigureMockMvc(print = MockMvcPrint.NONE)
+@EnabledIfSystemProperty(named = "perf.enabled", matches = "true")
+class SubscriptionControllerPerformanceTests {
+
+	private static final int SUBSCRIPTIONS = 200;
+	private static final int TITLES = 50;
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private SubscriptionRepository subscriptionRepository;
+
+	@MockitoBean
+	private RestTemplate restTemplate;
+
+	@Test
+	public void endpointsStayWithinBaseline() throws Exception {
+		//Book Service always has copies, so every checkout is accepted
+		when(restTemplate.getForObject(anyString(), eq(Book.class)))
+				.thenReturn(new Book("Q0000", "Performance Title", "SK", 1_000_000, 1_000_000));
+		List<Subscription> subscriptions = new ArrayList<>();
+		for (int i = 0; i < SUBSCRIPTIONS; i++) {
+			subscriptions.add(new Subscription(null, "Subscriber " + (i % 20), "06-OCT-2026", null, bookId(i % TITLES)));
+		}
+		List<Long> ids = subscriptionRepository.saveAll(subscriptions).stream().map(Subscription::getId).toList();
+
+		PerformanceHarness harness = new PerformanceHarness();
+		//Reads first, the create workload grows the table
+		harness.measure("subscriptions.list", 1000, 300, i ->
+				mockMvc.perform(get("/subscriptions")).andExpect(status().isOk()));
+		harness.measure("subscriptions.get", 5000, 3000, i ->
+				mockMvc.perform(get("/subscriptions/" + ids.get(i % SUBSCRIPTIONS))).andExpect(status().isOk()));
+		harness.measure("subscriptions.create", 2000, 1000, i ->
+				mockMvc.perform(post("/subscriptions").contentType(MediaType.APPLICATION_JSON)
+						.content(subscription("Subscriber " + (i % 20), bookId(i % TITLES))))
+					.andExpect(status().isCreated()));
+		harness.measure("subscriptions.stats", 3000, 1000, i ->
+				mockMvc.perform(get("/subscriptions/stats").param("from", "2026-09-07").param("to", "2026-10-06")
+						.param("bookId", bookId(i % TITLES))).andExpect(status().isOk()));
+
+		assertThat(harness.compareWithBaseline()).as("Regressions beyond the thresholds").isEmpty();
+	}
+
+	private static String subscription(String subscriberName, String bookId) {
+		return "{\"subscriberName\":\"" + subscriberName + "\",\"dateSubscriber\":\"06-OCT-2026\",\"bookId\":\"" + bookId + "\"}";
+	}
+
+	private static String bookId(int i) {
+		return String.format("Q%04d", i);
+	}
+}
@@ -0,0 +1,208 @@
+package com.fis.booklibrary.casestudy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import com.fis.booklibrary.casestudy.model.AvailabilityJournalEntry;
+import com.fis.booklibrary.casestudy.model.Book;
+import com.fis.booklibrary.casestudy.model.Subscription;
+import com.fis.booklibrary.casestudy.repository.AvailabilityJournalRepository;
+import com.fis.booklibrary.casestudy.repository.SubscriptionRepository;
+import com.fis.booklibrary.casestudy.service.DegradedAvailabilityService;
+import com.fis.booklibrary.casestudy.service.SubscriptionService;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class DegradedAvailabilityTests {
+
+	private static final String BOOK_URI = "http://book-service/books/B8000";
+	private static final String COMPARE_AND_SET_URI = "http://book-service/books/{bookId}?expectedAvailable={expected}";
+
+	@Autowired
+	private SubscriptionService subscriptionService;
+	
+	@Autowired
+	private DegradedAvailabilityService degradedAvailabilityService;
+	
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+	
+	@Autowired
+	private AvailabilityJournalRepository availabilityJournalRepository;
+	
+	@Autowired
+	private SubscriptionRepository subscriptionRepository;
+	
+	@Autowired
+	private MockMvc mockMvc;
+	
+	@Autowired
+	private CircuitBreakerRegistry circuitBreakerRegistry;
+	
+	@MockitoBean
+	private RestTemplate restTemplate;
+	
+	@AfterEach
+	public void closeBreaker() {
+		circuitBreakerRegistry.circuitBreaker("book-service").transitionToClosedState();
+	}
+	
+	@Test
+	public void checkoutsContinueFromLastKnownAvailabilityAndAreReplayed() throws InterruptedException {
+		when(restTemplate.getForObject(eq(BOOK_URI), eq(Book.class))).thenReturn(new Book("B8000", "Outage", "SK", 5, 5));
+		Subscription checkout = new Subscription(null, "Ivy", "06-OCT-2026", null, "B8000");
+		assertThat(subscriptionService.updateAvailableCopies(checkout).getStatusCode()).isEqualTo(HttpStatus.OK);
+		verify(restTemplate).put(BOOK_URI, 4);
+		
+		circuitBreakerRegistry.circuitBreaker("book-service").transitionToForcedOpenState();
+		
+		//Last known 4 copies, margin of 1 (20% of 5 rounded up): three checkouts fit
+		for (int i = 0; i < 3; i++) {
+			accept(new Subscription(null, "Ivy", "06-OCT-2026", null, "B8000"));
+		}
+		assertThat(subscriptionService.updateAvailableCopies(checkout).getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+		assertThat(subscriptionService.getAvailableCopies(checkout)).isZero();
+		
+		//Returns never depend on availability
+		accept(new Subscription(null, "Ivy", "06-OCT-2026", "08-OCT-2026", "B8000"));
+		assertThat(subscriptionService.getAvailableCopies(checkout)).isEqualTo(1);
+		assertThat(availabilityJournalRepository.findByBookIdOrderByIdAsc("B8000")).hasSize(4);
+		verify(restTemplate, never()).put(BOOK_URI, 3);
+		
+		//Book Service went on to lend one more copy itself during the outage
+		when(restTemplate.getForObject(eq(BOOK_URI), eq(Book.class))).thenReturn(new Book("B8000", "Outage", "SK", 3, 5));
+		circuitBreakerRegistry.circuitBreaker("book-service").transitionToClosedState();
+		
+		verify(restTemplate, timeout(5000)).put(COMPARE_AND_SET_URI, 1, "B8000", 3);
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!availabilityJournalRepository.findByBookIdOrderByIdAsc("B8000").isEmpty()
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+		assertThat(availabilityJournalRepository.findByBookIdOrderByIdAsc("B8000")).isEmpty();
+	}
+	
+	@Test
+	public void unknownTitlesAreRejectedWhileDegraded() {
+		circuitBreakerRegistry.circuitBreaker("book-service").transitionToForcedOpenState();
+		
+		Subscription checkout = new Subscription(null, "Jo", "06-OCT-2026", null, "B8001");
+		assertThat(subscriptionService.updateAvailableCopies(checkout).getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+		assertThat(availabilityJournalRepository.findByBookIdOrderByIdAsc("B8001")).isEmpty();
+		verify(restTemplate, never()).put(eq("http://book-service/books/B8001"), anyInt());
+	}
+	
+	@Test
+	public void refusedCheckoutIsNotCreated() throws Exception {
+		when(restTemplate.getForObject(eq("http://book-service/books/B8002"), eq(Book.class)))
+				.thenReturn(new Book("B8002", "Margin", "SK", 2, 5));
+		mockMvc.perform(post("/subscriptions").contentType(MediaType.APPLICATION_JSON).content(checkout("B8002")))
+			.andExpect(status().isCreated());
+		
+		circuitBreakerRegistry.circuitBreaker("book-service").transitionToForcedOpenState();
+		
+		//Last known 1 copy, a checkout would drop below the margin of 1
+		mockMvc.perform(post("/subscriptions").contentType(MediaType.APPLICATION_JSON).content(checkout("B8002")))
+			.andExpect(status().isServiceUnavailable());
+		//Nothing is known about B8003
+		mockMvc.perform(post("/subscriptions").contentType(MediaType.APPLICATION_JSON).content(checkout("B8003")))
+			.andExpect(status().isServiceUnavailable());
+		
+		assertThat(subscriptionRepository.findAll()).filteredOn(subscription -> subscription.getBookId().startsWith("B800"))
+			.extracting(Subscription::getBookId).containsOnlyOnce("B8002").doesNotContain("B8003");
+		assertThat(availabilityJournalRepository.findByBookIdOrderByIdAsc("B8002")).isEmpty();
+		assertThat(availabilityJournalRepository.findByBookIdOrderByIdAsc("B8003")).isEmpty();
+	}
+	
+	@Test
+	public void changeIsDroppedWhenItsSubscriptionIsNotSaved() {
+		degradedAvailabilityService.observe(new Book("B8004", "Rollback", "SK", 5, 5));
+		circuitBreakerRegistry.circuitBreaker("book-service").transitionToForcedOpenState();
+		Subscription checkout = new Subscription(null, "Lee", "06-OCT-2026", null, "B8004");
+		assertThat(subscriptionService.updateAvailableCopies(checkout).getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(degradedAvailabilityService.hasPending("B8004")).isTrue();
+		
+		//The subscription transaction fails after the change was journaled in it
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			subscriptionService.addSubscription(checkout);
+			status.setRollbackOnly();
+		});
+		
+		assertThat(availabilityJournalRepository.findByBookIdOrderByIdAsc("B8004")).isEmpty();
+		assertThat(degradedAvailabilityService.hasPending("B8004")).isFalse();
+	}
+	
+	@Test
+	public void timedOutUpdateIsNotAppliedProvisionally() {
+		when(restTemplate.getForObject(eq("http://book-service/books/B8005"), eq(Book.class)))
+				.thenReturn(new Book("B8005", "Timeout", "SK", 3, 5));
+		//Book Service may have applied the update before the read timed out
+		doThrow(new ResourceAccessException("Read timed out")).when(restTemplate).put("http://book-service/books/B8005", 2);
+		
+		Subscription checkout = new Subscription(null, "Max", "06-OCT-2026", null, "B8005");
+		assertThat(subscriptionService.updateAvailableCopies(checkout).getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+		assertThat(degradedAvailabilityService.hasPending("B8005")).isFalse();
+	}
+	
+	@Test
+	public void replayRetriesConcurrentChangesAndKeepsCheckoutsBeyondTheCopiesLeft() throws InterruptedException {
+		degradedAvailabilityService.observe(new Book("B8006", "Oversold", "SK", 10, 10));
+		circuitBreakerRegistry.circuitBreaker("book-service").transitionToForcedOpenState();
+		for (int i = 0; i < 3; i++) {
+			accept(new Subscription(null, "Ned", "06-OCT-2026", null, "B8006"));
+		}
+		
+		//Book Service lent copies itself meanwhile, and once more while the first replay was in flight
+		when(restTemplate.getForObject(eq("http://book-service/books/B8006"), eq(Book.class))).thenReturn(
+				new Book("B8006", "Oversold", "SK", 2, 10), new Book("B8006", "Oversold", "SK", 1, 10),
+				new Book("B8006", "Oversold", "SK", 0, 10));
+		doThrow(HttpClientErrorException.create(HttpStatus.CONFLICT, "Conflict", null, null, null))
+			.when(restTemplate).put(COMPARE_AND_SET_URI, 0, "B8006", 2);
+		circuitBreakerRegistry.circuitBreaker("book-service").transitionToClosedState();
+		
+		verify(restTemplate, timeout(5000)).put(COMPARE_AND_SET_URI, 0, "B8006", 1);
+		long deadline = System.currentTimeMillis() + 5000;
+		while (availabilityJournalRepository.findByBookIdOrderByIdAsc("B8006").size() != 1
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+		//One checkout fit, the other two are still owed to Book Service
+		assertThat(availabilityJournalRepository.findByBookIdOrderByIdAsc("B8006"))
+			.extracting(AvailabilityJournalEntry::getDelta).containsExactly(-2);
+		assertThat(degradedAvailabilityService.hasPending("B8006")).isTrue();
+	}
+	
+	private void accept(Subscription subscription) {
+		assertThat(subscriptionService.updateAvailableCopies(subscription).getStatusCode()).isEqualTo(HttpStatus.OK);
+		subscriptionService.addSubscription(subscription);
+	}
+	
+	private static String checkout(String bookId) {
+		return "{\"subscriberName\":\"Kai\",\"dateSubscriber\":\"06-OCT-2026\",\"bookId\":\"" + bookId + "\"}";
+	}
+}
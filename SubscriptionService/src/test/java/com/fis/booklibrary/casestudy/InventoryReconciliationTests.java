@@ -0,0 +1,174 @@
+package com.fis.booklibrary.casestudy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import com.fis.booklibrary.casestudy.model.Book;
+import com.fis.booklibrary.casestudy.model.InventoryDiscrepancy;
+import com.fis.booklibrary.casestudy.model.ReconciliationMode;
+import com.fis.booklibrary.casestudy.model.ReconciliationReport;
+import com.fis.booklibrary.casestudy.model.Subscription;
+import com.fis.booklibrary.casestudy.repository.SubscriptionRepository;
+import com.fis.booklibrary.casestudy.service.DegradedAvailabilityService;
+import com.fis.booklibrary.casestudy.service.InventoryReconciliationService;
+import com.fis.booklibrary.casestudy.service.SubscriptionService;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+
+@SpringBootTest(properties = {"booklibrary.reconciliation.chunk-size=2", "booklibrary.reconciliation.chunk-pause-ms=0"})
+@AutoConfigureMockMvc
+class InventoryReconciliationTests {
+
+	private static final String INVENTORY_URI = "http://book-service/books/inventory?after={after}&limit={limit}";
+	private static final String COMPARE_AND_SET_URI = "http://book-service/books/{bookId}?expectedAvailable={expected}";
+
+	@Autowired
+	private MockMvc mockMvc;
+	
+	@Autowired
+	private InventoryReconciliationService reconciliationService;
+	
+	@Autowired
+	private SubscriptionRepository subscriptionRepository;
+	
+	@Autowired
+	private SubscriptionService subscriptionService;
+	
+	@Autowired
+	private DegradedAvailabilityService degradedAvailabilityService;
+	
+	@Autowired
+	private CircuitBreakerRegistry circuitBreakerRegistry;
+	
+	@MockitoBean
+	private RestTemplate restTemplate;
+	
+	@Test
+	public void mergeJoinReportsThenCorrectsConfirmedDrift() {
+		//B1212 already has two open loans from the seed data
+		subscriptionRepository.save(new Subscription(null, "Gus", "06-OCT-2026", null, "B3000"));
+		subscriptionRepository.save(new Subscription(null, "Hal", "06-OCT-2026", null, "B9999"));
+		when(restTemplate.getForObject(eq(INVENTORY_URI), eq(Book[].class), eq(""), eq(2))).thenReturn(new Book[] {
+				new Book("B1212", "Matched", "SK", 3, 5), new Book("B2000", "Drifted", "SK", 1, 2)});
+		when(restTemplate.getForObject(eq(INVENTORY_URI), eq(Book[].class), eq("B2000"), eq(2))).thenReturn(new Book[] {
+				new Book("B3000", "Matched", "SK", 3, 4), new Book("B4232", "Returned", "SK", 1, 1)});
+		when(restTemplate.getForObject(eq(INVENTORY_URI), eq(Book[].class), eq("B4232"), eq(2))).thenReturn(new Book[0]);
+		
+		assertThat(reconciliationService.reconcileIncrement()).isTrue();
+		ReconciliationReport report = reconciliationService.getLastReport();
+		assertThat(report.getBooksChecked()).isEqualTo(4);
+		assertThat(report.getDiscrepancyCount()).isEqualTo(2);
+		assertThat(report.getDiscrepancies()).extracting(InventoryDiscrepancy::getBookId).containsExactly("B2000", "B9999");
+		assertThat(report.getDiscrepancies().get(0).getExpectedAvailable()).isEqualTo(2);
+		verify(restTemplate, never()).put(anyString(), any(), any(), any());
+		
+		//The same drift seen again is written back in correct mode
+		ReflectionTestUtils.setField(reconciliationService, "mode", ReconciliationMode.CORRECT);
+		try {
+			assertThat(reconciliationService.reconcileIncrement()).isTrue();
+		} finally {
+			ReflectionTestUtils.setField(reconciliationService, "mode", ReconciliationMode.REPORT);
+		}
+		assertThat(reconciliationService.getLastReport().getCorrected()).isEqualTo(1);
+		//Compare-and-set with the copies read in this pass
+		verify(restTemplate).put(COMPARE_AND_SET_URI, 2, "B2000", 1);
+	}
+	
+	@Test
+	public void titlesWithUnreplayedChangesAreNotCorrected() {
+		//A checkout accepted while Book Service was down, not yet replayed
+		degradedAvailabilityService.observe(new Book("B3100", "Degraded", "SK", 3, 3));
+		circuitBreakerRegistry.circuitBreaker("book-service").transitionToForcedOpenState();
+		Subscription checkout = new Subscription(null, "Ida", "06-OCT-2026", null, "B3100");
+		when(restTemplate.getForObject(eq(INVENTORY_URI), eq(Book[].class), eq(""), eq(2))).thenReturn(new Book[] {
+				new Book("B3100", "Degraded", "SK", 3, 3)});
+		ReflectionTestUtils.setField(reconciliationService, "mode", ReconciliationMode.CORRECT);
+		try {
+			assertThat(degradedAvailabilityService.applyProvisionally(checkout)).isTrue();
+			subscriptionService.addSubscription(checkout);
+			assertThat(reconciliationService.reconcileIncrement()).isTrue();
+			assertThat(reconciliationService.reconcileIncrement()).isTrue();
+			
+			assertThat(reconciliationService.getLastReport().getDiscrepancies())
+				.extracting(InventoryDiscrepancy::getBookId).doesNotContain("B3100");
+			verify(restTemplate, never()).put(eq(COMPARE_AND_SET_URI), anyInt(), eq("B3100"), any());
+		} finally {
+			ReflectionTestUtils.setField(reconciliationService, "mode", ReconciliationMode.REPORT);
+			subscriptionRepository.delete(checkout);
+			circuitBreakerRegistry.circuitBreaker("book-service").transitionToClosedState();
+		}
+	}
+	
+	@Test
+	public void confirmedDriftsBeyondTheReportCapAreCorrectedUnlessCopiesChanged() {
+		when(restTemplate.getForObject(eq(INVENTORY_URI), eq(Book[].class), eq(""), eq(2))).thenReturn(new Book[] {
+				new Book("B3200", "Drifted", "SK", 1, 2), new Book("B3201", "Drifted", "SK", 1, 2)});
+		when(restTemplate.getForObject(eq(INVENTORY_URI), eq(Book[].class), eq("B3201"), eq(2))).thenReturn(new Book[] {
+				new Book("B3202", "Drifted", "SK", 1, 2)});
+		//A checkout changed B3201 after it was read
+		doThrow(HttpClientErrorException.create(HttpStatus.CONFLICT, "Conflict", null, null, null))
+			.when(restTemplate).put(COMPARE_AND_SET_URI, 2, "B3201", 1);
+		ReflectionTestUtils.setField(reconciliationService, "maxReported", 1);
+		ReflectionTestUtils.setField(reconciliationService, "mode", ReconciliationMode.CORRECT);
+		try {
+			assertThat(reconciliationService.reconcileIncrement()).isTrue();
+			assertThat(reconciliationService.reconcileIncrement()).isTrue();
+		} finally {
+			ReflectionTestUtils.setField(reconciliationService, "mode", ReconciliationMode.REPORT);
+			ReflectionTestUtils.setField(reconciliationService, "maxReported", 100);
+		}
+		
+		assertThat(reconciliationService.getLastReport().getDiscrepancies()).hasSize(1);
+		assertThat(reconciliationService.getLastReport().getCorrected()).isEqualTo(2);
+		verify(restTemplate).put(COMPARE_AND_SET_URI, 2, "B3200", 1);
+		verify(restTemplate).put(COMPARE_AND_SET_URI, 2, "B3202", 1);
+	}
+	
+	@Test
+	public void postedReturnClosesTheLoanSoItIsNotCountedAsLent() throws Exception {
+		when(restTemplate.getForObject(eq("http://book-service/books/B3300"), eq(Book.class)))
+			.thenReturn(new Book("B3300", "Returned", "SK", 5, 5));
+		mockMvc.perform(post("/subscriptions").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"subscriberName\":\"Jo\",\"dateSubscriber\":\"07-OCT-2026\",\"bookId\":\"B3300\"}"))
+			.andExpect(status().isCreated());
+		mockMvc.perform(post("/subscriptions").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"subscriberName\":\"Jo\",\"dateSubscriber\":\"07-OCT-2026\","
+						+ "\"dateReturned\":\"08-OCT-2026\",\"bookId\":\"B3300\"}"))
+			.andExpect(status().isCreated());
+		//All copies are back in stock
+		when(restTemplate.getForObject(eq(INVENTORY_URI), eq(Book[].class), eq(""), eq(2))).thenReturn(new Book[] {
+				new Book("B3300", "Returned", "SK", 5, 5)});
+		ReflectionTestUtils.setField(reconciliationService, "mode", ReconciliationMode.CORRECT);
+		try {
+			assertThat(reconciliationService.reconcileIncrement()).isTrue();
+			assertThat(reconciliationService.reconcileIncrement()).isTrue();
+		} finally {
+			ReflectionTestUtils.setField(reconciliationService, "mode", ReconciliationMode.REPORT);
+		}
+		
+		assertThat(reconciliationService.getLastReport().getDiscrepancies())
+			.extracting(InventoryDiscrepancy::getBookId).doesNotContain("B3300");
+		verify(restTemplate, never()).put(eq(COMPARE_AND_SET_URI), anyInt(), eq("B3300"), any());
+	}
+}
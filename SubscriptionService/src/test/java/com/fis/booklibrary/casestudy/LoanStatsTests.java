@@ -0,0 +1,185 @@
+package com.fis.booklibrary.casestudy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.client.RestTemplate;
+
+import com.fis.booklibrary.casestudy.model.Book;
+import com.fis.booklibrary.casestudy.model.LoanStatsBackfill;
+import com.fis.booklibrary.casestudy.model.Subscription;
+import com.fis.booklibrary.casestudy.repository.LoanStatsBackfillRepository;
+import com.fis.booklibrary.casestudy.repository.LoanStatsBucketRepository;
+import com.fis.booklibrary.casestudy.repository.LoanStatsPendingRepository;
+import com.fis.booklibrary.casestudy.repository.SubscriptionRepository;
+import com.fis.booklibrary.casestudy.service.LoanStatsService;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class LoanStatsTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+	
+	@MockitoBean
+	private RestTemplate restTemplate;
+	
+	@MockitoSpyBean
+	private LoanStatsBucketRepository loanStatsBucketRepository;
+	
+	@Autowired
+	private LoanStatsPendingRepository loanStatsPendingRepository;
+	
+	@Autowired
+	private LoanStatsBackfillRepository loanStatsBackfillRepository;
+	
+	@Autowired
+	private SubscriptionRepository subscriptionRepository;
+	
+	@Autowired
+	private LoanStatsService loanStatsService;
+	
+	@Test
+	public void statsFollowAddedSubscriptions() throws Exception {
+		when(restTemplate.getForObject(eq("http://book-service/books/B7000"), eq(Book.class)))
+				.thenReturn(new Book("B7000", "Counted", "SK", 5, 5));
+		when(restTemplate.getForObject(eq("http://book-service/books/B7001"), eq(Book.class)))
+				.thenReturn(new Book("B7001", "Counted Too", "SK", 5, 5));
+		
+		subscribe("Gil", "B7000", "02-JAN-2031", null);
+		subscribe("Hana", "B7000", "03-JAN-2031", null);
+		subscribe("Gil", "B7001", "2031-01-14", null);
+		subscribe("Gil", "B7000", "02-JAN-2031", "12-JAN-2031");
+		subscribe("Hana", "B7000", "03-JAN-2031", "07-FEB-2031");
+		
+		mockMvc.perform(get("/subscriptions/stats").param("from", "2031-01-01").param("to", "2031-02-28")
+				.param("bucket", "month").param("bookId", "B7000"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.loans").value(2))
+			.andExpect(jsonPath("$.returns").value(2))
+			.andExpect(jsonPath("$.averageLoanDays").value(22.5))
+			.andExpect(jsonPath("$.periods.length()").value(2))
+			.andExpect(jsonPath("$.periods[0].start").value("2031-01-01"))
+			.andExpect(jsonPath("$.periods[0].loans").value(2))
+			.andExpect(jsonPath("$.periods[0].averageLoanDays").value(10.0))
+			.andExpect(jsonPath("$.periods[1].start").value("2031-02-01"))
+			.andExpect(jsonPath("$.periods[1].returns").value(1));
+		
+		mockMvc.perform(get("/subscriptions/stats").param("from", "2031-01-01").param("to", "2031-01-31")
+				.param("bucket", "week").param("subscriberName", "Gil"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.loans").value(2))
+			.andExpect(jsonPath("$.periods[0].start").value("2030-12-30"))
+			.andExpect(jsonPath("$.periods[1].start").value("2031-01-06"))
+			.andExpect(jsonPath("$.periods[2].start").value("2031-01-13"));
+		
+		mockMvc.perform(get("/subscriptions/stats").param("from", "2031-01-01").param("to", "2031-01-31"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.loans").value(3))
+			.andExpect(jsonPath("$.periods.length()").value(4));
+		
+		mockMvc.perform(get("/subscriptions/stats/books").param("from", "2031-01-01").param("to", "2031-01-31"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$[0].bookId").value("B7000"))
+			.andExpect(jsonPath("$[0].loans").value(2))
+			.andExpect(jsonPath("$[1].bookId").value("B7001"));
+	}
+	
+	@Test
+	public void failedIncrementIsCountedByTheRepairPass() throws Exception {
+		when(restTemplate.getForObject(eq("http://book-service/books/B7002"), eq(Book.class)))
+				.thenReturn(new Book("B7002", "Counted Later", "SK", 5, 5));
+		doThrow(new TransientDataAccessResourceException("Statistics unavailable")).when(loanStatsBucketRepository)
+			.increment(eq("BOOK"), eq("B7002"), eq(LocalDate.of(2031, 3, 3)), anyLong(), anyLong(), anyLong(), anyLong());
+		
+		subscribe("Gil", "B7002", "03-MAR-2031", null);
+		assertThat(loanStatsService.getReport(LocalDate.of(2031, 3, 1), LocalDate.of(2031, 3, 31), "day", "B7002", null)
+				.getLoans()).isZero();
+		
+		reset(loanStatsBucketRepository);
+		ReflectionTestUtils.setField(loanStatsService, "repairIntervalMs", -1000L);
+		try {
+			loanStatsService.repair();
+		} finally {
+			ReflectionTestUtils.setField(loanStatsService, "repairIntervalMs", 60000L);
+		}
+		
+		assertThat(loanStatsService.getReport(LocalDate.of(2031, 3, 1), LocalDate.of(2031, 3, 31), "day", "B7002", null)
+				.getLoans()).isEqualTo(1);
+		assertThat(loanStatsService.getReport(LocalDate.of(2031, 3, 1), LocalDate.of(2031, 3, 31), "day", null, "Gil")
+				.getLoans()).isEqualTo(1);
+		assertThat(loanStatsPendingRepository.count()).isZero();
+	}
+	
+	@Test
+	public void seedSubscriptionsAreCountedByTheBackfill() throws Exception {
+		mockMvc.perform(get("/subscriptions/stats").param("from", "2020-06-01").param("to", "2020-06-30")
+				.param("bookId", "B1212"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.loans").value(2))
+			.andExpect(jsonPath("$.periods[0].start").value("2020-06-12"))
+			.andExpect(jsonPath("$.periods[1].start").value("2020-06-22"));
+	}
+	
+	@Test
+	public void interruptedBackfillResumesAfterItsMark() {
+		//Existing subscriptions, the first page of them applied before a restart
+		List<Subscription> subscriptions = subscriptionRepository.saveAll(List.of(
+				new Subscription(null, "Ines", "05-APR-2031", null, "B7003"),
+				new Subscription(null, "Ines", "06-APR-2031", null, "B7003"),
+				new Subscription(null, "Ines", "07-APR-2031", null, "B7003")));
+		loanStatsBackfillRepository.save(new LoanStatsBackfill(LoanStatsBackfill.ID,
+				subscriptions.get(0).getId(), subscriptions.get(2).getId()));
+		
+		loanStatsService.backfill();
+		
+		assertThat(loanStatsService.getReport(LocalDate.of(2031, 4, 1), LocalDate.of(2031, 4, 30), "day", "B7003", null)
+				.getPeriods()).extracting("start").containsExactly(LocalDate.of(2031, 4, 6), LocalDate.of(2031, 4, 7));
+		assertThat(loanStatsBackfillRepository.findById(LoanStatsBackfill.ID).get().getLastSubscriptionId())
+				.isEqualTo(subscriptions.get(2).getId());
+		
+		//Done, a later start applies nothing
+		loanStatsService.backfill();
+		assertThat(loanStatsService.getReport(LocalDate.of(2031, 4, 1), LocalDate.of(2031, 4, 30), "day", "B7003", null)
+				.getLoans()).isEqualTo(2);
+	}
+	
+	@Test
+	public void invalidStatsRequestsAreRejected() throws Exception {
+		mockMvc.perform(get("/subscriptions/stats").param("bucket", "year"))
+			.andExpect(status().isBadRequest());
+		mockMvc.perform(get("/subscriptions/stats").param("from", "2031-02-01").param("to", "2031-01-01"))
+			.andExpect(status().isBadRequest());
+		mockMvc.perform(get("/subscriptions/stats").param("bookId", "B7000").param("subscriberName", "Gil"))
+			.andExpect(status().isBadRequest());
+	}
+	
+	private void subscribe(String subscriberName, String bookId, String dateSubscriber, String dateReturned) throws Exception {
+		String returned = dateReturned == null ? "" : ",\"dateReturned\":\"" + dateReturned + "\"";
+		mockMvc.perform(post("/subscriptions").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"subscriberName\":\"" + subscriberName + "\",\"dateSubscriber\":\"" + dateSubscriber
+						+ "\",\"bookId\":\"" + bookId + "\"" + returned + "}"))
+			.andExpect(status().isCreated());
+	}
+}
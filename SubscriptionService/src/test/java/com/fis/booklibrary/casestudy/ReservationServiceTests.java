@@ -0,0 +1,170 @@
+package com.fis.booklibrary.casestudy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import com.fis.booklibrary.casestudy.model.Book;
+import com.fis.booklibrary.casestudy.model.Reservation;
+import com.fis.booklibrary.casestudy.model.ReservationStatus;
+import com.fis.booklibrary.casestudy.model.Subscription;
+import com.fis.booklibrary.casestudy.repository.ReservationRepository;
+import com.fis.booklibrary.casestudy.repository.SubscriptionRepository;
+import com.fis.booklibrary.casestudy.service.ReservationService;
+import com.fis.booklibrary.casestudy.service.SubscriptionService;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class ReservationServiceTests {
+
+	private static final String BOOK_URI = "http://book-service/books/B5000";
+
+	@Autowired
+	private ReservationService reservationService;
+	
+	@Autowired
+	private SubscriptionRepository subscriptionRepository;
+	
+	@Autowired
+	private ReservationRepository reservationRepository;
+	
+	@Autowired
+	private MockMvc mockMvc;
+	
+	@MockitoBean
+	private RestTemplate restTemplate;
+	
+	@MockitoSpyBean
+	private SubscriptionService subscriptionService;
+	
+	@Test
+	public void releasedCopyFulfilsOldestHold() {
+		Reservation first = reservationService.placeHold(new Subscription(null, "Anna", "01-OCT-2026", null, "B5000"));
+		Reservation second = reservationService.placeHold(new Subscription(null, "Ben", "02-OCT-2026", null, "B5000"));
+		
+		assertThat(first.getQueuePosition()).isEqualTo(1);
+		assertThat(second.getQueuePosition()).isEqualTo(2);
+		
+		DeferredResult<ResponseEntity<Reservation>> firstWaiter = reservationService.awaitReservation(first.getId(), 30000);
+		assertThat(firstWaiter.hasResult()).isFalse();
+		
+		//A return released one copy
+		when(restTemplate.getForObject(eq(BOOK_URI), eq(Book.class))).thenReturn(new Book("B5000", "Waitlisted", "SK", 1, 1));
+		Reservation fulfilled = reservationService.fulfilNext("B5000").get();
+		
+		assertThat(fulfilled.getId()).isEqualTo(first.getId());
+		assertThat(fulfilled.getStatus()).isEqualTo(ReservationStatus.FULFILLED);
+		assertThat(subscriptionRepository.findById(fulfilled.getSubscriptionId()).get().getSubscriberName()).isEqualTo("Anna");
+		assertThat(((ResponseEntity<?>) firstWaiter.getResult()).getBody()).isSameAs(fulfilled);
+		assertThat(reservationService.getReservation(second.getId()).get().getQueuePosition()).isEqualTo(1);
+	}
+	
+	@Test
+	public void holdStaysWaitingWhenNoCopyIsAvailable() {
+		Reservation hold = reservationService.placeHold(new Subscription(null, "Cleo", "03-OCT-2026", null, "B5001"));
+		when(restTemplate.getForObject(eq("http://book-service/books/B5001"), eq(Book.class)))
+			.thenReturn(new Book("B5001", "Waitlisted", "SK", 0, 1));
+		
+		assertThat(reservationService.fulfilNext("B5001")).isEmpty();
+		assertThat(reservationService.getReservation(hold.getId()).get().getStatus()).isEqualTo(ReservationStatus.WAITING);
+	}
+	
+	@Test
+	public void returnedCopyGoesToTheHoldWithoutPassingThroughStock() throws Exception {
+		Reservation hold = reservationService.placeHold(new Subscription(null, "Dee", "04-OCT-2026", null, "B5002"));
+		
+		mockMvc.perform(post("/subscriptions").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"subscriberName\":\"Eve\",\"dateSubscriber\":\"01-OCT-2026\",\"dateReturned\":\"05-OCT-2026\",\"bookId\":\"B5002\"}"))
+			.andExpect(status().isCreated())
+			.andExpect(jsonPath("$.subscriberName").value("Eve"));
+		
+		Reservation fulfilled = reservationService.getReservation(hold.getId()).get();
+		assertThat(fulfilled.getStatus()).isEqualTo(ReservationStatus.FULFILLED);
+		assertThat(subscriptionRepository.findById(fulfilled.getSubscriptionId()).get().getSubscriberName()).isEqualTo("Dee");
+		//Book Service copies are unchanged, a new checkout cannot take the copy first
+		verify(restTemplate, never()).put(eq("http://book-service/books/B5002"), anyInt());
+	}
+	
+	@Test
+	public void failedFulfilmentPutsTheHoldBackOnTheWaitlist() {
+		Reservation hold = reservationService.placeHold(new Subscription(null, "Finn", "04-OCT-2026", null, "B5003"));
+		when(restTemplate.getForObject(eq("http://book-service/books/B5003"), eq(Book.class)))
+			.thenReturn(new Book("B5003", "Waitlisted", "SK", 1, 1), new Book("B5003", "Waitlisted", "SK", 0, 1));
+		doThrow(new IllegalStateException("Subscription could not be saved"))
+			.when(subscriptionService).addSubscription(argThat(subscription -> "B5003".equals(subscription.getBookId())));
+		
+		assertThatThrownBy(() -> reservationService.fulfilNext("B5003")).isInstanceOf(IllegalStateException.class);
+		assertThat(reservationService.getReservation(hold.getId()).get().getStatus()).isEqualTo(ReservationStatus.WAITING);
+		//The copy taken for the hold went back to stock
+		verify(restTemplate).put("http://book-service/books/B5003", 0);
+		verify(restTemplate).put("http://book-service/books/B5003", 1);
+	}
+	
+	@Test
+	public void holdsStuckWhileFulfillingAreRecovered() {
+		Reservation hold = reservationService.placeHold(new Subscription(null, "Gia", "04-OCT-2026", null, "B5004"));
+		Reservation taken = reservationService.placeHold(new Subscription(null, "Gia", "04-OCT-2026", null, "B5004"));
+		when(restTemplate.getForObject(eq("http://book-service/books/B5004"), eq(Book.class)))
+			.thenReturn(new Book("B5004", "Waitlisted", "SK", 0, 2));
+		//Claimed by an instance that stopped before fulfilling them, after taking a copy for the second
+		assertThat(reservationRepository.claim(hold.getId(), System.currentTimeMillis() - 120_000)).isEqualTo(1);
+		assertThat(reservationRepository.claim(taken.getId(), System.currentTimeMillis() - 120_000)).isEqualTo(1);
+		assertThat(reservationRepository.transition(taken.getId(), ReservationStatus.FULFILLING,
+				ReservationStatus.COPY_TAKEN)).isEqualTo(1);
+		
+		reservationService.recoverStuckHolds();
+		assertThat(reservationService.getReservation(hold.getId()).get().getStatus()).isEqualTo(ReservationStatus.WAITING);
+		assertThat(reservationService.getReservation(taken.getId()).get().getStatus()).isEqualTo(ReservationStatus.WAITING);
+		//Only the copy actually taken is given back
+		verify(restTemplate, times(1)).put(eq("http://book-service/books/B5004"), anyInt());
+		verify(restTemplate).put("http://book-service/books/B5004", 1);
+	}
+	
+	@Test
+	public void recoverySweepFulfilsHoldsOfRestockedTitles() {
+		Reservation hold = reservationService.placeHold(new Subscription(null, "Ilse", "04-OCT-2026", null, "B5006"));
+		//Copies added with a direct PUT to Book Service, no return released them
+		when(restTemplate.getForObject(eq("http://book-service/books/B5006"), eq(Book.class)))
+			.thenReturn(new Book("B5006", "Restocked", "SK", 3, 3));
+		
+		reservationService.recoverStuckHolds();
+		assertThat(reservationService.getReservation(hold.getId()).get().getStatus()).isEqualTo(ReservationStatus.FULFILLED);
+		verify(restTemplate).put("http://book-service/books/B5006", 2);
+	}
+	
+	@Test
+	public void reservationErrorsKeepTheirStatus() throws Exception {
+		mockMvc.perform(get("/reservations/999999"))
+			.andExpect(status().isNotFound());
+		
+		Reservation hold = reservationService.placeHold(new Subscription(null, "Hugo", "04-OCT-2026", null, "B5005"));
+		mockMvc.perform(delete("/reservations/" + hold.getId()))
+			.andExpect(status().isNoContent());
+		mockMvc.perform(delete("/reservations/" + hold.getId()))
+			.andExpect(status().isConflict());
+	}
+}
@@ -0,0 +1,126 @@
+package com.fis.booklibrary.casestudy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.client.RestTemplate;
+
+import com.fis.booklibrary.casestudy.model.Book;
+import com.fis.booklibrary.casestudy.repository.IdempotencyRecordRepository;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class SubscriptionIdempotencyTests {
+
+	private static final String BOOK_URI = "http://book-service/books/B6000";
+
+	@Autowired
+	private MockMvc mockMvc;
+	
+	@Autowired
+	private IdempotencyRecordRepository idempotencyRecordRepository;
+	
+	@MockitoBean
+	private RestTemplate restTemplate;
+	
+	@Test
+	public void retryWithSameKeyReplaysCreatedSubscription() throws Exception {
+		when(restTemplate.getForObject(eq(BOOK_URI), eq(Book.class))).thenReturn(new Book("B6000", "Retried", "SK", 3, 3));
+		String body = "{\"subscriberName\":\"Dana\",\"dateSubscriber\":\"04-OCT-2026\",\"bookId\":\"B6000\"}";
+		
+		String created = mockMvc.perform(post("/subscriptions").header("Idempotency-Key", "retry-1")
+				.contentType(MediaType.APPLICATION_JSON).content(body))
+			.andExpect(status().isCreated())
+			.andReturn().getResponse().getContentAsString();
+		
+		mockMvc.perform(post("/subscriptions").header("Idempotency-Key", "retry-1")
+				.contentType(MediaType.APPLICATION_JSON).content(body))
+			.andExpect(status().isCreated())
+			.andExpect(header().string("Idempotent-Replayed", "true"))
+			.andExpect(content().json(created))
+			.andExpect(jsonPath("$.subscriberName").value("Dana"));
+		
+		//Book Service was only called for the first request
+		verify(restTemplate, times(1)).getForObject(eq(BOOK_URI), eq(Book.class));
+		verify(restTemplate, times(1)).put(eq(BOOK_URI), anyInt());
+	}
+	
+	@Test
+	public void reusedKeyWithDifferentRequestIsRejected() throws Exception {
+		when(restTemplate.getForObject(eq(BOOK_URI), eq(Book.class))).thenReturn(new Book("B6000", "Retried", "SK", 3, 3));
+		mockMvc.perform(post("/subscriptions").header("Idempotency-Key", "retry-2")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{\"subscriberName\":\"Eli\",\"dateSubscriber\":\"05-OCT-2026\",\"bookId\":\"B6000\"}"))
+			.andExpect(status().isCreated());
+		
+		mockMvc.perform(post("/subscriptions").header("Idempotency-Key", "retry-2")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{\"subscriberName\":\"Fay\",\"dateSubscriber\":\"05-OCT-2026\",\"bookId\":\"B6000\"}"))
+			.andExpect(status().isUnprocessableEntity());
+	}
+	
+	@Test
+	public void retryWhileFirstRequestIsInProgressGetsConflict() throws Exception {
+		CountDownLatch bookServiceCalled = new CountDownLatch(1);
+		CountDownLatch releaseBookService = new CountDownLatch(1);
+		when(restTemplate.getForObject(eq(BOOK_URI), eq(Book.class))).thenAnswer(invocation -> {
+			bookServiceCalled.countDown();
+			releaseBookService.await(10, TimeUnit.SECONDS);
+			return new Book("B6000", "Retried", "SK", 3, 3);
+		});
+		String body = "{\"subscriberName\":\"Gus\",\"dateSubscriber\":\"06-OCT-2026\",\"bookId\":\"B6000\"}";
+		
+		CompletableFuture<MvcResult> first = CompletableFuture.supplyAsync(() -> {
+			try {
+				return mockMvc.perform(post("/subscriptions").header("Idempotency-Key", "retry-3")
+						.contentType(MediaType.APPLICATION_JSON).content(body)).andReturn();
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		assertThat(bookServiceCalled.await(10, TimeUnit.SECONDS)).isTrue();
+		
+		mockMvc.perform(post("/subscriptions").header("Idempotency-Key", "retry-3")
+				.contentType(MediaType.APPLICATION_JSON).content(body))
+			.andExpect(status().isConflict())
+			.andExpect(jsonPath("$.message").value("A request with this Idempotency-Key is still being processed"));
+		
+		releaseBookService.countDown();
+		assertThat(first.get(10, TimeUnit.SECONDS).getResponse().getStatus()).isEqualTo(201);
+	}
+	
+	@Test
+	public void onlyOneRequestReservesOrTakesOverAKey() {
+		assertThat(idempotencyRecordRepository.insert("race-1", "hash", 1000L)).isEqualTo(1);
+		assertThatThrownBy(() -> idempotencyRecordRepository.insert("race-1", "hash", 2000L))
+			.isInstanceOf(DataIntegrityViolationException.class);
+		
+		//Two requests that both read the stale record, only the first takes it over
+		assertThat(idempotencyRecordRepository.takeOver("race-1", 1000L, "hash", 3000L)).isEqualTo(1);
+		assertThat(idempotencyRecordRepository.takeOver("race-1", 1000L, "hash", 4000L)).isZero();
+		assertThat(idempotencyRecordRepository.findById("race-1").get().getCreatedAt()).isEqualTo(3000L);
+	}
+}